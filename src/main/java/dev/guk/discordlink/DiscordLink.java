@@ -1,39 +1,103 @@
 package dev.guk.discordlink;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.bukkit.plugin.ServicePriority;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import dev.guk.discordlink.api.DiscordLinkApi;
 import dev.guk.discordlink.commands.AdminCommand;
+import dev.guk.discordlink.commands.AdminCommandRouter;
 import dev.guk.discordlink.commands.TwoFactorCommand;
 import dev.guk.discordlink.commands.UnlinkCommand;
 import dev.guk.discordlink.commands.VerifyCommand;
+import dev.guk.discordlink.discord.DirectMessageDispatcher;
 import dev.guk.discordlink.discord.DiscordBot;
+import dev.guk.discordlink.discord.NicknameSyncManager;
+import dev.guk.discordlink.discord.RestScheduler;
+import dev.guk.discordlink.discord.RoleSyncManager;
+import dev.guk.discordlink.discord.SharedGateway;
 import dev.guk.discordlink.listeners.PlayerListener;
+import dev.guk.discordlink.managers.AuditManager;
+import dev.guk.discordlink.managers.LinkApiManager;
 import dev.guk.discordlink.managers.StorageManager;
 import dev.guk.discordlink.managers.TwoFactorManager;
+import dev.guk.discordlink.managers.TwoFactorSessionManager;
 import dev.guk.discordlink.managers.VerificationFreezeManager;
 import dev.guk.discordlink.managers.VerificationManager;
+import dev.guk.discordlink.tasks.AsyncExecutor;
+import dev.guk.discordlink.tasks.MemberLeaveTask;
+import dev.guk.discordlink.tasks.TickProfiler;
+import dev.guk.discordlink.tasks.TimingWheel;
 
 public class DiscordLink extends JavaPlugin {
     private DiscordBot discordBot;
+    private SharedGateway sharedGateway;
     private StorageManager storageManager;
+    private LinkApiManager linkApi;
+    private AuditManager auditManager;
     private VerificationManager verificationManager;
     private TwoFactorManager twoFactorManager;
+    private TwoFactorSessionManager twoFactorSessionManager;
     private VerificationFreezeManager verificationFreezeManager;
+    private MemberLeaveTask memberLeaveTask;
+    private TimingWheel timingWheel;
+    private TickProfiler tickProfiler;
+    private AsyncExecutor asyncExecutor;
+    private DirectMessageDispatcher directMessageDispatcher;
+    private NicknameSyncManager nicknameSyncManager;
+    private RoleSyncManager roleSyncManager;
+    private ScheduledExecutorService restTimer;
+    private RestScheduler restScheduler;
 
     @Override
     public void onEnable() {
         // Save default config
         saveDefaultConfig();
 
+        // Per-tick cost of our own handlers and tasks, started first so everything below is measured
+        this.tickProfiler = new TickProfiler(this);
+        this.tickProfiler.start();
+
+        // Async layer for blocking storage and Discord work
+        this.asyncExecutor = new AsyncExecutor(this);
+        this.asyncExecutor.start();
+
+        // Shared scheduler for per-player timed work
+        this.timingWheel = new TimingWheel(this);
+        this.timingWheel.start();
+
         // Initialize managers
+        this.auditManager = new AuditManager(this);
+        this.auditManager.start();
         this.storageManager = new StorageManager(this);
+        this.linkApi = new LinkApiManager(this);
         this.verificationManager = new VerificationManager(this);
         this.twoFactorManager = new TwoFactorManager(this);
+        this.twoFactorSessionManager = new TwoFactorSessionManager(this);
         this.verificationFreezeManager = new VerificationFreezeManager(this);
 
-        // Initialize Discord bot
+        // Start the member leave queue before the bot so startup catch-up can use it
+        this.memberLeaveTask = new MemberLeaveTask(this);
+        this.memberLeaveTask.start();
+
+        // Outbound Discord requests are prioritised by class
+        this.restTimer = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("DiscordLink-REST").factory());
+        this.restScheduler = new RestScheduler(getConfig().getConfigurationSection("discord.rest"), restTimer);
+
+        // Ready before the connection, the bot and followers of the shared gateway feed these as soon as it is up
+        this.directMessageDispatcher = new DirectMessageDispatcher(this);
+        this.directMessageDispatcher.start();
+        this.nicknameSyncManager = new NicknameSyncManager(this);
+        this.nicknameSyncManager.start();
+        this.roleSyncManager = new RoleSyncManager(this);
+        this.roleSyncManager.start();
+
+        // Initialize Discord bot, or join the shared gateway of other servers on this host
         this.discordBot = new DiscordBot(this);
-        if (!this.discordBot.start()) {
+        this.sharedGateway = new SharedGateway(this);
+        if (!connectDiscord()) {
             getLogger().severe("Failed to start Discord bot! Plugin will be disabled.");
             getServer().getPluginManager().disablePlugin(this);
             return;
@@ -42,31 +106,94 @@ public class DiscordLink extends JavaPlugin {
         // Register commands
         getCommand("verify").setExecutor(new VerifyCommand(this));
         getCommand("unlink").setExecutor(new UnlinkCommand(this));
-        getCommand("discordlink").setExecutor(new AdminCommand(this));
+        getCommand("discordlink").setExecutor(new AdminCommandRouter(this, new AdminCommand(this)));
         getCommand("2fa").setExecutor(new TwoFactorCommand(this));
         
         // Register listeners
         getServer().getPluginManager().registerEvents(new PlayerListener(this), this);
 
+        // Public API for other plugins, see DiscordLinkApi.get()
+        getServer().getServicesManager().register(DiscordLinkApi.class, linkApi, this, ServicePriority.Normal);
+
         getLogger().info("DiscordLink has been enabled!");
     }
 
     @Override
     public void onDisable() {
+        if (memberLeaveTask != null) {
+            memberLeaveTask.stop();
+        }
+        if (directMessageDispatcher != null) {
+            directMessageDispatcher.stop();
+        }
+        if (nicknameSyncManager != null) {
+            nicknameSyncManager.stop();
+        }
+        if (roleSyncManager != null) {
+            roleSyncManager.stop();
+        }
+        if (sharedGateway != null) {
+            sharedGateway.stop();
+        }
         if (discordBot != null) {
             discordBot.stop();
         }
+        if (restTimer != null) {
+            restTimer.shutdownNow();
+        }
+        if (timingWheel != null) {
+            timingWheel.stop();
+        }
+        if (tickProfiler != null) {
+            tickProfiler.stop();
+        }
+        // Let pending saves and Discord calls finish, then write anything still unsaved
+        if (asyncExecutor != null) {
+            asyncExecutor.shutdown();
+        }
+        if (storageManager != null) {
+            storageManager.flush();
+        }
+        if (auditManager != null) {
+            auditManager.stop();
+        }
+        if (linkApi != null) {
+            getServer().getServicesManager().unregister(DiscordLinkApi.class, linkApi);
+            linkApi.clear();
+        }
         getLogger().info("DiscordLink has been disabled!");
     }
 
+    /**
+     * Connects to Discord, directly or through the shared gateway. Overridden by
+     * the tick budget tests, which run the plugin on a mock server without a bot.
+     *
+     * @return false if the plugin can't run without the connection
+     */
+    protected boolean connectDiscord() {
+        return sharedGateway.start();
+    }
+
     public DiscordBot getDiscordBot() {
         return discordBot;
     }
 
+    public SharedGateway getSharedGateway() {
+        return sharedGateway;
+    }
+
     public StorageManager getStorageManager() {
         return storageManager;
     }
 
+    public LinkApiManager getLinkApi() {
+        return linkApi;
+    }
+
+    public AuditManager getAuditManager() {
+        return auditManager;
+    }
+
     public VerificationManager getVerificationManager() {
         return verificationManager;
     }
@@ -75,7 +202,43 @@ public class DiscordLink extends JavaPlugin {
         return twoFactorManager;
     }
 
+    public TwoFactorSessionManager getTwoFactorSessionManager() {
+        return twoFactorSessionManager;
+    }
+
     public VerificationFreezeManager getVerificationFreezeManager() {
         return verificationFreezeManager;
     }
+
+    public AsyncExecutor getAsyncExecutor() {
+        return asyncExecutor;
+    }
+
+    public TimingWheel getTimingWheel() {
+        return timingWheel;
+    }
+
+    public TickProfiler getTickProfiler() {
+        return tickProfiler;
+    }
+
+    public MemberLeaveTask getMemberLeaveTask() {
+        return memberLeaveTask;
+    }
+
+    public DirectMessageDispatcher getDirectMessageDispatcher() {
+        return directMessageDispatcher;
+    }
+
+    public RestScheduler getRestScheduler() {
+        return restScheduler;
+    }
+
+    public NicknameSyncManager getNicknameSyncManager() {
+        return nicknameSyncManager;
+    }
+
+    public RoleSyncManager getRoleSyncManager() {
+        return roleSyncManager;
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,73 @@
+package dev.guk.discordlink.api;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import org.bukkit.Bukkit;
+
+/**
+ * Public entry point for plugins that need DiscordLink's link data.
+ *
+ * Every method is safe to call from any thread. The synchronous lookups read
+ * an in-memory index and never block; the {@code CompletableFuture} variants
+ * are for callers that don't want to depend on that, and currently complete
+ * immediately.
+ *
+ * <pre>
+ * DiscordLinkApi api = DiscordLinkApi.get();
+ * api.getDiscordId(player.getUniqueId()).ifPresent(id -> ...);
+ * api.subscribe(new LinkListener() {
+ *     public void onLink(LinkEvent event) { ... }
+ * });
+ * </pre>
+ */
+public interface DiscordLinkApi {
+
+    /**
+     * Returns the API registered by DiscordLink, or null if it isn't enabled.
+     */
+    static DiscordLinkApi get() {
+        return Bukkit.getServicesManager().load(DiscordLinkApi.class);
+    }
+
+    Optional<String> getDiscordId(UUID playerId);
+
+    Optional<UUID> getPlayerId(String discordId);
+
+    boolean isLinked(UUID playerId);
+
+    CompletableFuture<Optional<String>> lookupDiscordId(UUID playerId);
+
+    CompletableFuture<Optional<UUID>> lookupPlayerId(String discordId);
+
+    /**
+     * Looks up many players at once.
+     *
+     * @return Discord IDs by player, containing only the players who are linked
+     */
+    Map<UUID, String> getDiscordIds(Collection<UUID> playerIds);
+
+    /**
+     * Looks up many Discord users at once.
+     *
+     * @return players by Discord ID, containing only the Discord users who are linked
+     */
+    Map<String, UUID> getPlayerIds(Collection<String> discordIds);
+
+    /**
+     * Registers a listener for link, unlink and 2FA events. Events are delivered
+     * on the thread that caused them, which is often not the main thread, so
+     * listeners should be quick and hand Bukkit work to the scheduler.
+     *
+     * @return a handle that removes the listener again
+     */
+    Subscription subscribe(LinkListener listener);
+
+    @FunctionalInterface
+    interface Subscription {
+        void unsubscribe();
+    }
+}
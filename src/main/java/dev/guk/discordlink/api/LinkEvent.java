@@ -0,0 +1,8 @@
+package dev.guk.discordlink.api;
+
+import java.util.UUID;
+
+/**
+ * A Minecraft account was linked to a Discord user.
+ */
+public record LinkEvent(UUID playerId, String discordId) {}
@@ -0,0 +1,18 @@
+package dev.guk.discordlink.api;
+
+/**
+ * Receives link lifecycle events. Override only the methods you need.
+ *
+ * @see DiscordLinkApi#subscribe(LinkListener)
+ */
+public interface LinkListener {
+
+    default void onLink(LinkEvent event) {
+    }
+
+    default void onUnlink(UnlinkEvent event) {
+    }
+
+    default void onTwoFactor(TwoFactorEvent event) {
+    }
+}
@@ -0,0 +1,18 @@
+package dev.guk.discordlink.api;
+
+import java.util.UUID;
+
+/**
+ * A linked player went through the 2FA step on join.
+ */
+public record TwoFactorEvent(UUID playerId, String discordId, Type type) {
+
+    public enum Type {
+        /** A 2FA code was sent to the player's Discord account */
+        CODE_SENT,
+        /** The player reconnected within a trusted session and skipped 2FA */
+        SESSION_TRUSTED,
+        /** The player entered the code that was sent to them */
+        COMPLETED
+    }
+}
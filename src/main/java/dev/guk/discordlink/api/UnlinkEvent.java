@@ -0,0 +1,16 @@
+package dev.guk.discordlink.api;
+
+import java.util.UUID;
+
+/**
+ * A link was removed.
+ */
+public record UnlinkEvent(UUID playerId, String discordId, Reason reason) {
+
+    public enum Reason {
+        /** Removed with /unlink, by an admin, or by /verify force */
+        UNLINKED,
+        /** The Discord user left the server */
+        DISCORD_LEAVE
+    }
+}
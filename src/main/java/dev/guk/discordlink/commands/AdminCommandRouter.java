@@ -0,0 +1,45 @@
+package dev.guk.discordlink.commands;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.jetbrains.annotations.NotNull;
+
+import dev.guk.discordlink.DiscordLink;
+
+/**
+ * Dispatches /discordlink subcommands that live in their own executors and
+ * hands everything else to the base admin command.
+ */
+public class AdminCommandRouter implements CommandExecutor {
+    private final CommandExecutor fallback;
+    private final Map<String, CommandExecutor> subcommands;
+
+    public AdminCommandRouter(DiscordLink plugin, CommandExecutor fallback) {
+        this.fallback = fallback;
+        this.subcommands = new HashMap<>();
+        this.subcommands.put("export", new ExportCommand(plugin));
+        this.subcommands.put("stats", new StatsCommand(plugin));
+        this.subcommands.put("resync", new ResyncCommand(plugin));
+        this.subcommands.put("audit", new AuditCommand(plugin));
+        this.subcommands.put("shards", new ShardsCommand(plugin));
+        this.subcommands.put("rest", new RestCommand(plugin));
+        this.subcommands.put("timings", new TimingsCommand(plugin));
+        this.subcommands.put("rolesync", new RoleSyncCommand(plugin));
+    }
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, String[] args) {
+        if (args.length > 0) {
+            CommandExecutor subcommand = subcommands.get(args[0].toLowerCase());
+            if (subcommand != null) {
+                return subcommand.onCommand(sender, command, label, Arrays.copyOfRange(args, 1, args.length));
+            }
+        }
+        return fallback.onCommand(sender, command, label, args);
+    }
+}
@@ -0,0 +1,62 @@
+package dev.guk.discordlink.commands;
+
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.jetbrains.annotations.NotNull;
+
+import dev.guk.discordlink.DiscordLink;
+import dev.guk.discordlink.utils.ColorUtils;
+
+/**
+ * /discordlink audit <uuid|discord id> [limit]
+ *
+ * Searches the recent audit files on a background thread.
+ */
+public class AuditCommand implements CommandExecutor {
+    private final DiscordLink plugin;
+
+    public AuditCommand(DiscordLink plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, String[] args) {
+        String prefix = plugin.getConfig().getString("settings.prefix", "&8[&b&lDiscordLink&8]&r ");
+
+        if (args.length < 1) {
+            sender.sendMessage(ColorUtils.translate(prefix + "&cUsage: /" + label + " audit <uuid|discord id> [limit]"));
+            return true;
+        }
+
+        String target = args[0];
+        int limit = 20;
+        if (args.length > 1) {
+            try {
+                limit = Math.max(1, Math.min(500, Integer.parseInt(args[1])));
+            } catch (NumberFormatException e) {
+                sender.sendMessage(ColorUtils.translate(prefix + "&cLimit must be a number."));
+                return true;
+            }
+        }
+        int max = limit;
+
+        plugin.getAsyncExecutor().supply(() -> plugin.getAuditManager().query(target, max)).whenCompleteAsync((lines, error) -> {
+            if (error != null) {
+                plugin.getLogger().severe("Error while searching audit log: " + error.getMessage());
+                sender.sendMessage(ColorUtils.translate(prefix + "&c❌ Could not search the audit log: " + error.getMessage()));
+                return;
+            }
+            if (lines.isEmpty()) {
+                sender.sendMessage(ColorUtils.translate(prefix + "&7No audit entries found for &f" + target));
+                return;
+            }
+            sender.sendMessage(ColorUtils.translate("&b=== Audit: " + target + " (" + lines.size() + ") ==="));
+            for (String line : lines) {
+                sender.sendMessage(ColorUtils.translate("&7" + line.replace('\t', ' ')));
+            }
+        }, plugin.getAsyncExecutor().main());
+
+        return true;
+    }
+}
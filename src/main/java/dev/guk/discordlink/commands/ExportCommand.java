@@ -0,0 +1,131 @@
+package dev.guk.discordlink.commands;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.jetbrains.annotations.NotNull;
+
+import dev.guk.discordlink.DiscordLink;
+import dev.guk.discordlink.managers.StorageManager;
+import dev.guk.discordlink.utils.ColorUtils;
+
+/**
+ * /discordlink export <jsonl|csv> [console]
+ *
+ * Streams every link page by page on a background thread, either to a file
+ * in the exports folder or to the console.
+ */
+public class ExportCommand implements CommandExecutor {
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final DiscordLink plugin;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public ExportCommand(DiscordLink plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, String[] args) {
+        String prefix = plugin.getConfig().getString("settings.prefix", "&8[&b&lDiscordLink&8]&r ");
+
+        if (args.length < 1 || !(args[0].equalsIgnoreCase("jsonl") || args[0].equalsIgnoreCase("csv"))) {
+            sender.sendMessage(ColorUtils.translate(prefix + "&cUsage: /" + label + " export <jsonl|csv> [console]"));
+            return true;
+        }
+        if (!running.compareAndSet(false, true)) {
+            sender.sendMessage(ColorUtils.translate(prefix + "&cAn export is already running, please wait for it to finish."));
+            return true;
+        }
+
+        boolean csv = args[0].equalsIgnoreCase("csv");
+        boolean toConsole = args.length > 1 && args[1].equalsIgnoreCase("console");
+        int pageSize = Math.max(1, plugin.getConfig().getInt("admin.export.page_size", 1000));
+
+        File exportFile = null;
+        if (!toConsole) {
+            File folder = new File(plugin.getDataFolder(), "exports");
+            exportFile = new File(folder, "links-" + LocalDateTime.now().format(FILE_TIMESTAMP) + (csv ? ".csv" : ".jsonl"));
+        }
+        File target = exportFile;
+
+        sender.sendMessage(ColorUtils.translate(prefix + "&7Exporting links in the background..."));
+        plugin.getAsyncExecutor().supply(() -> {
+            StorageManager.LinkCursor cursor = plugin.getStorageManager().openCursor();
+            if (target == null) {
+                return exportToConsole(cursor, csv, pageSize);
+            }
+            target.getParentFile().mkdirs();
+            try (BufferedWriter writer = Files.newBufferedWriter(target.toPath(), StandardCharsets.UTF_8)) {
+                return export(cursor, writer, csv, pageSize);
+            }
+        }).whenCompleteAsync((count, error) -> {
+            running.set(false);
+            if (error != null) {
+                plugin.getLogger().severe("Error while exporting links: " + error.getMessage());
+                sender.sendMessage(ColorUtils.translate(prefix + "&c❌ Export failed: " + error.getMessage()));
+                return;
+            }
+            String destination = target == null ? "the console" : "exports/" + target.getName();
+            sender.sendMessage(ColorUtils.translate(prefix + "&a✔ Exported &e" + count + " &alinks to &f" + destination));
+        }, plugin.getAsyncExecutor().main());
+
+        return true;
+    }
+
+    private long export(StorageManager.LinkCursor cursor, Writer writer, boolean csv, int pageSize) throws IOException {
+        if (csv) {
+            writer.write("uuid,discord_id,linked_at\n");
+        }
+        long count = 0;
+        while (cursor.hasNext()) {
+            List<StorageManager.LinkRecord> page = cursor.nextPage(pageSize);
+            for (StorageManager.LinkRecord record : page) {
+                writer.write(format(record, csv));
+                writer.write('\n');
+            }
+            count += page.size();
+        }
+        return count;
+    }
+
+    private long exportToConsole(StorageManager.LinkCursor cursor, boolean csv, int pageSize) {
+        if (csv) {
+            plugin.getLogger().info("uuid,discord_id,linked_at");
+        }
+        long count = 0;
+        StringBuilder chunk = new StringBuilder();
+        while (cursor.hasNext()) {
+            List<StorageManager.LinkRecord> page = cursor.nextPage(pageSize);
+            chunk.setLength(0);
+            for (StorageManager.LinkRecord record : page) {
+                chunk.append('\n').append(format(record, csv));
+            }
+            // One log call per page keeps console output ordered without a line per link
+            plugin.getLogger().info("Export " + (count + 1) + "-" + (count + page.size()) + ":" + chunk);
+            count += page.size();
+        }
+        return count;
+    }
+
+    private String format(StorageManager.LinkRecord record, boolean csv) {
+        String linkedAt = record.linkedAt() > 0 ? Instant.ofEpochMilli(record.linkedAt()).toString() : "";
+        if (csv) {
+            return record.playerId() + "," + record.discordId() + "," + linkedAt;
+        }
+        return "{\"uuid\":\"" + record.playerId() + "\",\"discord_id\":\"" + record.discordId()
+                + "\",\"linked_at\":" + (linkedAt.isEmpty() ? "null" : "\"" + linkedAt + "\"") + "}";
+    }
+}
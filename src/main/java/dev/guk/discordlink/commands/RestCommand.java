@@ -0,0 +1,39 @@
+package dev.guk.discordlink.commands;
+
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.jetbrains.annotations.NotNull;
+
+import dev.guk.discordlink.DiscordLink;
+import dev.guk.discordlink.discord.RestScheduler;
+import dev.guk.discordlink.utils.ColorUtils;
+
+/**
+ * /discordlink rest
+ *
+ * Shows queue depth, drops and wait times for each outbound Discord request class.
+ */
+public class RestCommand implements CommandExecutor {
+    private final DiscordLink plugin;
+
+    public RestCommand(DiscordLink plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, String[] args) {
+        sender.sendMessage(ColorUtils.translate("&b=== Discord Requests ==="));
+        for (RestScheduler.Priority priority : RestScheduler.Priority.values()) {
+            RestScheduler.Stats stats = plugin.getRestScheduler().getStats(priority);
+            sender.sendMessage(ColorUtils.translate("&7" + priority.name().toLowerCase()
+                    + " &8| &7queued &f" + stats.queued()
+                    + " &8| &7in flight &f" + stats.inFlight()
+                    + " &8| &7sent &f" + stats.started()
+                    + " &8| &7dropped &f" + stats.dropped()
+                    + " &8| &7429s &f" + stats.rateLimited()
+                    + " &8| &7wait avg &f" + stats.averageWaitMillis() + "ms &7max &f" + stats.maxWaitMillis() + "ms"));
+        }
+        return true;
+    }
+}
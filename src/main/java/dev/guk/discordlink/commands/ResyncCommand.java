@@ -0,0 +1,49 @@
+package dev.guk.discordlink.commands;
+
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.jetbrains.annotations.NotNull;
+
+import dev.guk.discordlink.DiscordLink;
+import dev.guk.discordlink.utils.ColorUtils;
+
+/**
+ * /discordlink resync
+ *
+ * Queues a nickname update for every link whose Discord nickname no longer
+ * matches the configured format, and reports how many REST calls were avoided.
+ */
+public class ResyncCommand implements CommandExecutor {
+    private final DiscordLink plugin;
+
+    public ResyncCommand(DiscordLink plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, String[] args) {
+        String prefix = plugin.getConfig().getString("settings.prefix", "&8[&b&lDiscordLink&8]&r ");
+
+        if (!plugin.getConfig().getBoolean("discord.sync_nickname", true)) {
+            sender.sendMessage(ColorUtils.translate(prefix + "&cNickname sync is disabled in config.yml."));
+            return true;
+        }
+
+        sender.sendMessage(ColorUtils.translate(prefix + "&7Checking nicknames in the background..."));
+        plugin.getAsyncExecutor().supply(() -> plugin.getNicknameSyncManager().resyncAll()).whenCompleteAsync((result, error) -> {
+            if (error != null) {
+                plugin.getLogger().severe("Error while resyncing nicknames: " + error.getMessage());
+                sender.sendMessage(ColorUtils.translate(prefix + "&c❌ Resync failed: " + error.getMessage()));
+                return;
+            }
+            sender.sendMessage(ColorUtils.translate(prefix + "&a✔ Queued &e" + result.queued() + " &anickname update(s)"));
+            sender.sendMessage(ColorUtils.translate("&7Skipped &f" + result.upToDate() + " &7REST call(s) for nicknames already up to date"));
+            if (result.unknownName() > 0) {
+                sender.sendMessage(ColorUtils.translate("&7" + result.unknownName() + " link(s) have no known Minecraft name yet and will sync on their next join"));
+            }
+        }, plugin.getAsyncExecutor().main());
+
+        return true;
+    }
+}
@@ -0,0 +1,59 @@
+package dev.guk.discordlink.commands;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.jetbrains.annotations.NotNull;
+
+import dev.guk.discordlink.DiscordLink;
+import dev.guk.discordlink.discord.RoleSyncManager;
+import dev.guk.discordlink.utils.ColorUtils;
+
+/**
+ * /discordlink rolesync [sweep]
+ *
+ * Shows how many Discord requests group-to-role sync has used, in total and
+ * for the most recent sweep, or starts a sweep of all online linked players.
+ */
+public class RoleSyncCommand implements CommandExecutor {
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    private final DiscordLink plugin;
+
+    public RoleSyncCommand(DiscordLink plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, String[] args) {
+        String prefix = plugin.getConfig().getString("settings.prefix", "&8[&b&lDiscordLink&8]&r ");
+        RoleSyncManager roleSync = plugin.getRoleSyncManager();
+
+        if (!roleSync.isEnabled()) {
+            sender.sendMessage(ColorUtils.translate(prefix + "&cRole sync is disabled or has no mappings in config.yml."));
+            return true;
+        }
+
+        if (args.length > 0 && args[0].equalsIgnoreCase("sweep")) {
+            int players = roleSync.sweep();
+            sender.sendMessage(ColorUtils.translate(prefix + "&a✔ Queued a role check for &e" + players + " &alinked player(s)"));
+            return true;
+        }
+
+        RoleSyncManager.Stats stats = roleSync.getStats();
+        sender.sendMessage(ColorUtils.translate("&b=== Role Sync ==="));
+        sender.sendMessage(ColorUtils.translate("&7Mappings: &f" + roleSync.getMappingCount() + " &8| &7Pending: &f" + roleSync.getPendingCount()));
+        sender.sendMessage(ColorUtils.translate("&7Since startup: &f" + stats.updates() + " &7role update(s), &f"
+                + stats.lookups() + " &7member lookup(s), &f" + stats.unchanged() + " &7skipped as unchanged"));
+        if (stats.lastSweepAt() > 0) {
+            sender.sendMessage(ColorUtils.translate("&7Last sweep at &f" + TIME.format(Instant.ofEpochMilli(stats.lastSweepAt()))
+                    + "&7: &f" + stats.lastSweepPlayers() + " &7player(s), &f" + stats.sweepUpdates() + " &7update(s), &f"
+                    + stats.sweepLookups() + " &7lookup(s)"));
+        }
+        return true;
+    }
+}
@@ -0,0 +1,68 @@
+package dev.guk.discordlink.commands;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.jetbrains.annotations.NotNull;
+
+import dev.guk.discordlink.DiscordLink;
+import dev.guk.discordlink.discord.SharedGateway;
+import dev.guk.discordlink.utils.ColorUtils;
+import net.dv8tion.jda.api.JDA;
+
+/**
+ * /discordlink shards
+ *
+ * Shows gateway status, latency and event throughput for each shard.
+ * Throughput is measured since the previous time the command was run.
+ */
+public class ShardsCommand implements CommandExecutor {
+    private final DiscordLink plugin;
+    private final Map<Integer, long[]> lastSample = new HashMap<>();
+
+    public ShardsCommand(DiscordLink plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, String[] args) {
+        String prefix = plugin.getConfig().getString("settings.prefix", "&8[&b&lDiscordLink&8]&r ");
+
+        if (plugin.getSharedGateway().isFollower()) {
+            sender.sendMessage(ColorUtils.translate(prefix + "&7This server uses the shared Discord gateway of another server &8| "
+                    + (plugin.getSharedGateway().isConnectedToLeader() ? "&aconnected" : "&cwaiting for a leader")));
+            return true;
+        }
+
+        if (plugin.getDiscordBot() == null || plugin.getDiscordBot().getShards().isEmpty()) {
+            sender.sendMessage(ColorUtils.translate(prefix + "&cThe Discord bot is not connected."));
+            return true;
+        }
+
+        long now = System.currentTimeMillis();
+        sender.sendMessage(ColorUtils.translate("&b=== Discord Shards ==="));
+        if (plugin.getSharedGateway().getMode() == SharedGateway.Mode.LEADER) {
+            sender.sendMessage(ColorUtils.translate("&7Shared gateway leader for &f" + plugin.getSharedGateway().getFollowerCount() + " &7other server(s)"));
+        }
+        for (JDA shard : plugin.getDiscordBot().getShards()) {
+            int shardId = shard.getShardInfo().getShardId();
+            long events = plugin.getDiscordBot().getShardEventCount(shardId);
+
+            String rate = "-";
+            long[] previous = lastSample.put(shardId, new long[] {events, now});
+            if (previous != null && now > previous[1]) {
+                rate = String.format("%.1f/s", (events - previous[0]) * 1000.0 / (now - previous[1]));
+            }
+
+            sender.sendMessage(ColorUtils.translate("&7Shard &f" + shard.getShardInfo().getShardString()
+                    + " &8| &7" + shard.getStatus()
+                    + " &8| &7ping &f" + shard.getGatewayPing() + "ms"
+                    + " &8| &7guilds &f" + shard.getGuildCache().size()
+                    + " &8| &7events &f" + events + " &7(" + rate + ")"));
+        }
+        return true;
+    }
+}
@@ -0,0 +1,98 @@
+package dev.guk.discordlink.commands;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.jetbrains.annotations.NotNull;
+
+import dev.guk.discordlink.DiscordLink;
+import dev.guk.discordlink.managers.StorageManager;
+import dev.guk.discordlink.utils.ColorUtils;
+
+/**
+ * /discordlink stats
+ *
+ * Scans the link store page by page on a background thread and reports totals,
+ * recent links per day and the verification success ratio.
+ */
+public class StatsCommand implements CommandExecutor {
+    private final DiscordLink plugin;
+
+    public StatsCommand(DiscordLink plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, String[] args) {
+        String prefix = plugin.getConfig().getString("settings.prefix", "&8[&b&lDiscordLink&8]&r ");
+        int days = Math.max(1, plugin.getConfig().getInt("admin.stats.days", 7));
+        int pageSize = Math.max(1, plugin.getConfig().getInt("admin.export.page_size", 1000));
+
+        plugin.getAsyncExecutor().supply(() -> collect(days, pageSize)).whenCompleteAsync((stats, error) -> {
+            if (error != null) {
+                plugin.getLogger().severe("Error while collecting link stats: " + error.getMessage());
+                sender.sendMessage(ColorUtils.translate(prefix + "&c❌ Could not collect stats: " + error.getMessage()));
+                return;
+            }
+
+            long success = plugin.getStorageManager().getVerifyAttempts(true);
+            long failure = plugin.getStorageManager().getVerifyAttempts(false);
+            long attempts = success + failure;
+            String ratio = attempts == 0 ? "n/a" : String.format("%.1f%%", success * 100.0 / attempts);
+
+            sender.sendMessage(ColorUtils.translate("&b=== DiscordLink Stats ==="));
+            sender.sendMessage(ColorUtils.translate("&7Total links: &f" + stats.total));
+            sender.sendMessage(ColorUtils.translate("&7Verify attempts: &a" + success + " succeeded &7/ &c" + failure + " failed &7(" + ratio + " success)"));
+            sender.sendMessage(ColorUtils.translate("&7Links per day (last " + days + " days):"));
+            LocalDate today = LocalDate.now();
+            for (int i = 0; i < days; i++) {
+                sender.sendMessage(ColorUtils.translate("&8 • &7" + today.minusDays(i) + ": &f" + stats.perDay[i]));
+            }
+            if (stats.undated > 0) {
+                sender.sendMessage(ColorUtils.translate("&8(" + stats.undated + " links predate link timestamps)"));
+            }
+        }, plugin.getAsyncExecutor().main());
+
+        return true;
+    }
+
+    private Stats collect(int days, int pageSize) {
+        Stats stats = new Stats(days);
+        LocalDate today = LocalDate.now();
+        ZoneId zone = ZoneId.systemDefault();
+
+        StorageManager.LinkCursor cursor = plugin.getStorageManager().openCursor();
+        while (cursor.hasNext()) {
+            List<StorageManager.LinkRecord> page = cursor.nextPage(pageSize);
+            for (StorageManager.LinkRecord record : page) {
+                stats.total++;
+                if (record.linkedAt() <= 0) {
+                    stats.undated++;
+                    continue;
+                }
+                LocalDate day = Instant.ofEpochMilli(record.linkedAt()).atZone(zone).toLocalDate();
+                long age = ChronoUnit.DAYS.between(day, today);
+                if (age >= 0 && age < days) {
+                    stats.perDay[(int) age]++;
+                }
+            }
+        }
+        return stats;
+    }
+
+    private static class Stats {
+        private final long[] perDay;
+        private long total;
+        private long undated;
+
+        private Stats(int days) {
+            this.perDay = new long[days];
+        }
+    }
+}
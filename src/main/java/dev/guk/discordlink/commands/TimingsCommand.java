@@ -0,0 +1,66 @@
+package dev.guk.discordlink.commands;
+
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.jetbrains.annotations.NotNull;
+
+import dev.guk.discordlink.DiscordLink;
+import dev.guk.discordlink.tasks.TickProfiler;
+import dev.guk.discordlink.utils.ColorUtils;
+
+/**
+ * /discordlink timings [reset]
+ *
+ * Shows the main-thread cost of each plugin handler and task, and how often
+ * the plugin went over its per-tick budget.
+ */
+public class TimingsCommand implements CommandExecutor {
+    private final DiscordLink plugin;
+
+    public TimingsCommand(DiscordLink plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, String[] args) {
+        String prefix = plugin.getConfig().getString("settings.prefix", "&8[&b&lDiscordLink&8]&r ");
+        TickProfiler profiler = plugin.getTickProfiler();
+
+        if (!profiler.isEnabled()) {
+            sender.sendMessage(ColorUtils.translate(prefix + "&cTimings are disabled. Set &fsettings.timings.enabled &cto true and restart."));
+            return true;
+        }
+
+        if (args.length > 0 && args[0].equalsIgnoreCase("reset")) {
+            profiler.reset();
+            sender.sendMessage(ColorUtils.translate(prefix + "&aTimings have been reset."));
+            return true;
+        }
+
+        TickProfiler.TickSnapshot ticks = profiler.getTicks();
+        sender.sendMessage(ColorUtils.translate("&b=== DiscordLink Timings ==="));
+        sender.sendMessage(ColorUtils.translate("&7Ticks &f" + ticks.ticks() + " &7(active &f" + ticks.activeTicks() + "&7)"
+                + " &8| &7avg &f" + micros(ticks.averageNanos())
+                + " &8| &7worst &f" + micros(ticks.worstNanos()) + " &7/ &f" + ticks.worstBytes() / 1024L + "KB"));
+        sender.sendMessage(ColorUtils.translate("&7Over budget (&f" + micros(ticks.budgetNanos()) + " &7/ &f"
+                + ticks.allocationBudgetBytes() / 1024L + "KB&7): &f" + ticks.overBudget() + " &7tick(s)"));
+
+        for (TickProfiler.Section section : TickProfiler.Section.values()) {
+            TickProfiler.SectionSnapshot stats = profiler.getSection(section);
+            if (stats.calls() == 0) {
+                continue;
+            }
+            sender.sendMessage(ColorUtils.translate("&7" + section.name().toLowerCase()
+                    + " &8| &7calls &f" + stats.calls()
+                    + " &8| &7avg &f" + micros(stats.averageNanos())
+                    + " &8| &7max &f" + micros(stats.maxNanos())
+                    + (profiler.isMeasuringAllocations() ? " &8| &7alloc &f" + stats.averageBytes() + "B/call" : "")));
+        }
+        return true;
+    }
+
+    private static String micros(long nanos) {
+        return String.format("%.1fµs", nanos / 1000.0);
+    }
+}
@@ -0,0 +1,64 @@
+package dev.guk.discordlink.commands;
+
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+import dev.guk.discordlink.DiscordLink;
+import dev.guk.discordlink.api.TwoFactorEvent;
+import dev.guk.discordlink.managers.AuditManager;
+import dev.guk.discordlink.utils.ColorUtils;
+
+public class TwoFactorCommand implements CommandExecutor {
+    private final DiscordLink plugin;
+
+    public TwoFactorCommand(DiscordLink plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, String[] args) {
+        String prefix = plugin.getConfig().getString("settings.prefix", "&8[&b&lDiscordLink&8]&r ");
+
+        if (!(sender instanceof Player)) {
+            sender.sendMessage(ColorUtils.translate(prefix + plugin.getConfig().getString("messages.minecraft.player-only", "&cThis command can only be used by players!")));
+            return true;
+        }
+
+        Player player = (Player) sender;
+
+        if (args.length != 1) {
+            String message = plugin.getConfig().getString("messages.minecraft.two-factor-required", "&e⚠ Please enter the 2FA code sent to your Discord account.\n&7Use: &f/2fa <code>");
+            player.sendMessage(ColorUtils.translate(prefix + message));
+            return true;
+        }
+
+        String message;
+        switch (plugin.getTwoFactorSessionManager().redeemCode(player.getUniqueId(), args[0].trim())) {
+            case SUCCESS:
+                String discordId = plugin.getStorageManager().getDiscordId(player.getUniqueId());
+                plugin.getAuditManager().record(AuditManager.Action.TWO_FACTOR_COMPLETED, player.getUniqueId(), discordId);
+                plugin.getLinkApi().publishTwoFactor(player.getUniqueId(), discordId, TwoFactorEvent.Type.COMPLETED);
+                message = plugin.getConfig().getString("messages.minecraft.two-factor-success", "&a✔ 2FA verification successful! You can now play.");
+                break;
+            case EXPIRED:
+                message = plugin.getConfig().getString("messages.minecraft.two-factor-expired", "&c⏳ Your 2FA code has expired. Rejoin to receive a new code.");
+                break;
+            case NO_CODE:
+                if (plugin.getTwoFactorSessionManager().hasCompleted(player.getUniqueId())
+                        || plugin.getTwoFactorSessionManager().hasTrustedSession(player.getUniqueId())) {
+                    message = plugin.getConfig().getString("messages.minecraft.two-factor-success", "&a✔ 2FA verification successful! You can now play.");
+                } else {
+                    message = plugin.getConfig().getString("messages.minecraft.two-factor-invalid", "&c❌ Invalid 2FA code. Please try again.");
+                }
+                break;
+            default:
+                message = plugin.getConfig().getString("messages.minecraft.two-factor-invalid", "&c❌ Invalid 2FA code. Please try again.");
+                break;
+        }
+        player.sendMessage(ColorUtils.translate(prefix + message));
+        return true;
+    }
+}
@@ -8,9 +8,6 @@ import org.jetbrains.annotations.NotNull;
 
 import dev.guk.discordlink.DiscordLink;
 import dev.guk.discordlink.utils.ColorUtils;
-import net.dv8tion.jda.api.entities.Guild;
-import net.dv8tion.jda.api.entities.Member;
-import net.dv8tion.jda.api.entities.Role;
 
 public class UnlinkCommand implements CommandExecutor {
     private final DiscordLink plugin;
@@ -41,24 +38,8 @@ public class UnlinkCommand implements CommandExecutor {
             // Get Discord ID before unlinking
             String discordId = plugin.getStorageManager().getDiscordId(player.getUniqueId());
             if (discordId != null) {
-                // Get Discord guild and role
-                Guild guild = plugin.getDiscordBot().getGuild();
-                Role verifiedRole = plugin.getDiscordBot().getVerifiedRole();
-                
-                if (guild != null && verifiedRole != null) {
-                    // Remove role from Discord member
-                    Member member = guild.getMemberById(discordId);
-                    if (member != null) {
-                        guild.removeRoleFromMember(member, verifiedRole).queue(
-                            success -> {
-                                if (plugin.getConfig().getBoolean("settings.debug", false)) {
-                                    plugin.getLogger().info("Removed verified role from " + member.getUser().getName());
-                                }
-                            },
-                            error -> plugin.getLogger().warning("Failed to remove role: " + error.getMessage())
-                        );
-                    }
-                }
+                // Remove the verified role in every managed guild, members are retrieved without blocking
+                plugin.getDiscordBot().removeVerifiedRoles(discordId);
             }
 
             // First, clear any 2FA status
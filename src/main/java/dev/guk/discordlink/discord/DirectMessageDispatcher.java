@@ -0,0 +1,144 @@
+package dev.guk.discordlink.discord;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bukkit.scheduler.BukkitTask;
+
+import dev.guk.discordlink.DiscordLink;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.channel.concrete.PrivateChannel;
+
+/**
+ * Sends Discord DMs through a bounded private channel cache and a paced
+ * outgoing queue. Repeated messages to the same user before the queue is
+ * drained are collapsed, only the newest one is sent.
+ */
+public class DirectMessageDispatcher {
+    private final DiscordLink plugin;
+    private final Map<String, PrivateChannel> channelCache;
+    private final LinkedHashMap<String, String> pending;
+    private final AtomicInteger inFlight;
+    private BukkitTask task;
+
+    public DirectMessageDispatcher(DiscordLink plugin) {
+        this.plugin = plugin;
+        int cacheSize = Math.max(16, plugin.getConfig().getInt("two_factor_auth.direct_messages.channel_cache_size", 1000));
+        this.channelCache = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PrivateChannel> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        this.pending = new LinkedHashMap<>();
+        this.inFlight = new AtomicInteger();
+    }
+
+    public void start() {
+        // Drain once per second, the per-second budget keeps us clear of the DM route limits
+        this.task = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, this::drain, 20L, 20L);
+    }
+
+    public void stop() {
+        if (this.task != null) {
+            this.task.cancel();
+            this.task = null;
+        }
+        synchronized (pending) {
+            pending.clear();
+        }
+        synchronized (channelCache) {
+            channelCache.clear();
+        }
+    }
+
+    /**
+     * Queues a direct message for the given Discord user.
+     */
+    public void send(String discordId, String message) {
+        if (discordId == null || message == null) {
+            return;
+        }
+        if (plugin.getSharedGateway().isFollower()) {
+            plugin.getSharedGateway().forwardDirectMessage(discordId, message);
+            return;
+        }
+        synchronized (pending) {
+            // Re-insert so a superseded message also moves to the back of the queue
+            pending.remove(discordId);
+            pending.put(discordId, message);
+        }
+    }
+
+    public int getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    private void drain() {
+        JDA jda = plugin.getDiscordBot() != null ? plugin.getDiscordBot().getJDA() : null;
+        if (jda == null) {
+            return;
+        }
+
+        int perSecond = Math.max(1, plugin.getConfig().getInt("two_factor_auth.direct_messages.max_per_second", 5));
+        int maxInFlight = Math.max(1, plugin.getConfig().getInt("two_factor_auth.direct_messages.max_in_flight", 10));
+        // Back off while earlier sends are still waiting on a rate-limit bucket
+        int budget = Math.min(perSecond, maxInFlight - inFlight.get());
+
+        synchronized (pending) {
+            Iterator<Map.Entry<String, String>> iterator = pending.entrySet().iterator();
+            while (budget > 0 && iterator.hasNext()) {
+                Map.Entry<String, String> entry = iterator.next();
+                iterator.remove();
+                dispatch(jda, entry.getKey(), entry.getValue());
+                budget--;
+            }
+        }
+    }
+
+    private void dispatch(JDA jda, String discordId, String message) {
+        PrivateChannel cached;
+        synchronized (channelCache) {
+            cached = channelCache.get(discordId);
+        }
+
+        inFlight.incrementAndGet();
+        if (cached != null) {
+            sendTo(cached, discordId, message);
+            return;
+        }
+
+        plugin.getRestScheduler().submit(RestScheduler.Priority.DIRECT_MESSAGE, () -> jda.openPrivateChannelById(discordId).submit(false))
+            .whenComplete((channel, error) -> {
+                if (error != null) {
+                    inFlight.decrementAndGet();
+                    plugin.getLogger().warning("Failed to open DM channel for Discord user " + discordId + ": " + error.getMessage());
+                    return;
+                }
+                synchronized (channelCache) {
+                    channelCache.put(discordId, channel);
+                }
+                sendTo(channel, discordId, message);
+            });
+    }
+
+    private void sendTo(PrivateChannel channel, String discordId, String message) {
+        plugin.getRestScheduler().submit(RestScheduler.Priority.DIRECT_MESSAGE, () -> channel.sendMessage(message).submit(false))
+            .whenComplete((success, error) -> {
+                inFlight.decrementAndGet();
+                if (error != null) {
+                    // The channel may have been closed or the user blocked us, don't keep reusing it
+                    synchronized (channelCache) {
+                        channelCache.remove(discordId);
+                    }
+                    plugin.getLogger().warning("Failed to send direct message to Discord user " + discordId + ": " + error.getMessage());
+                } else if (plugin.getConfig().getBoolean("settings.debug", false)) {
+                    plugin.getLogger().info("Sent direct message to Discord user " + discordId);
+                }
+            });
+    }
+}
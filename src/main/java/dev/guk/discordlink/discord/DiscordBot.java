@@ -1,8 +1,21 @@
 package dev.guk.discordlink.discord;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 import org.bukkit.Bukkit;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
 
 import dev.guk.discordlink.DiscordLink;
@@ -11,18 +24,28 @@ import net.dv8tion.jda.api.JDABuilder;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.exceptions.ErrorResponseException;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
 import net.dv8tion.jda.api.events.guild.member.GuildMemberRemoveEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import net.dv8tion.jda.api.interactions.commands.OptionMapping;
+import net.dv8tion.jda.api.requests.ErrorResponse;
 import net.dv8tion.jda.api.requests.GatewayIntent;
+import net.dv8tion.jda.api.sharding.DefaultShardManagerBuilder;
+import net.dv8tion.jda.api.sharding.ShardManager;
+import net.dv8tion.jda.api.utils.MemberCachePolicy;
 
 public class DiscordBot extends ListenerAdapter {
     private final DiscordLink plugin;
     private JDA jda;
+    private ShardManager shardManager;
     private Guild guild;
     private Role verifiedRole;
     private boolean roleHierarchyValid = false;
+    // Verified role per guild ID, including the main guild
+    private final Map<String, Role> verifiedRoles = new ConcurrentHashMap<>();
+    private final Map<Integer, LongAdder> shardEvents = new ConcurrentHashMap<>();
 
     public DiscordBot(DiscordLink plugin) {
         this.plugin = plugin;
@@ -36,9 +59,50 @@ public class DiscordBot extends ListenerAdapter {
         return verifiedRole;
     }
 
+    /**
+     * Returns the verified role configured for the given guild, or null if the guild isn't managed.
+     */
+    public Role getVerifiedRole(Guild guild) {
+        return guild == null ? null : verifiedRoles.get(guild.getId());
+    }
+
+    public Collection<Role> getVerifiedRoles() {
+        return verifiedRoles.values();
+    }
+
+    /**
+     * Returns the connection serving the main guild. When sharded, this is that guild's shard.
+     */
     public JDA getJDA() {
+        if (shardManager != null) {
+            return guild != null ? guild.getJDA() : shardManager.getShardCache().stream().findFirst().orElse(null);
+        }
         return jda;
     }
+
+    public ShardManager getShardManager() {
+        return shardManager;
+    }
+
+    /**
+     * Returns every gateway connection, a single one when sharding is disabled.
+     */
+    public List<JDA> getShards() {
+        if (shardManager != null) {
+            List<JDA> shards = new ArrayList<>(shardManager.getShards());
+            shards.sort(Comparator.comparingInt(shard -> shard.getShardInfo().getShardId()));
+            return shards;
+        }
+        return jda != null ? List.of(jda) : List.of();
+    }
+
+    /**
+     * Returns the number of gateway events received by a shard since startup.
+     */
+    public long getShardEventCount(int shardId) {
+        LongAdder counter = shardEvents.get(shardId);
+        return counter != null ? counter.sum() : 0L;
+    }
     
     public boolean isRoleHierarchyValid() {
         return roleHierarchyValid;
@@ -52,12 +116,26 @@ public class DiscordBot extends ListenerAdapter {
         }
 
         try {
-            jda = JDABuilder.createDefault(token)
-                    .enableIntents(GatewayIntent.GUILD_MEMBERS)
-                    .addEventListeners(this)
-                    .build();
+            if (plugin.getConfig().getBoolean("discord.sharding.enabled", false)) {
+                int shardCount = plugin.getConfig().getInt("discord.sharding.shard_count", -1);
+                shardManager = DefaultShardManagerBuilder.createDefault(token)
+                        .enableIntents(GatewayIntent.GUILD_MEMBERS)
+                        .setMemberCachePolicy(createMemberCachePolicy())
+                        .setShardsTotal(shardCount)
+                        .addEventListeners(this)
+                        .build();
+
+                awaitAllShards();
+                plugin.getLogger().info("Started " + shardManager.getShardsTotal() + " Discord shard(s)");
+            } else {
+                jda = JDABuilder.createDefault(token)
+                        .enableIntents(GatewayIntent.GUILD_MEMBERS)
+                        .setMemberCachePolicy(createMemberCachePolicy())
+                        .addEventListeners(this)
+                        .build();
 
-            jda.awaitReady();
+                jda.awaitReady();
+            }
 
             // Get the guild
             String guildId = plugin.getConfig().getString("discord.guild_id");
@@ -66,7 +144,7 @@ public class DiscordBot extends ListenerAdapter {
                 return false;
             }
 
-            guild = jda.getGuildById(guildId);
+            guild = shardManager != null ? shardManager.getGuildById(guildId) : jda.getGuildById(guildId);
             if (guild == null) {
                 plugin.getLogger().severe("Could not find Discord guild with ID: " + guildId);
                 return false;
@@ -104,10 +182,21 @@ public class DiscordBot extends ListenerAdapter {
                 plugin.getLogger().info("Role hierarchy check passed! Bot can assign the verified role.");
             }
 
-            // Register the verify command
-            guild.upsertCommand("verify", "Verify your Minecraft account")
-                    .addOption(net.dv8tion.jda.api.interactions.commands.OptionType.STRING, "code", "The verification code from Minecraft", true)
-                    .queue();
+            verifiedRoles.put(guild.getId(), verifiedRole);
+            loadAdditionalGuilds();
+
+            // Register the verify command in every managed guild
+            for (String managedGuildId : verifiedRoles.keySet()) {
+                Guild managedGuild = getGuildById(managedGuildId);
+                managedGuild.upsertCommand("verify", "Verify your Minecraft account")
+                        .addOption(net.dv8tion.jda.api.interactions.commands.OptionType.STRING, "code", "The verification code from Minecraft", true)
+                        .queue();
+            }
+
+            // Unlink anyone who left the guild while we were offline
+            if (plugin.getConfig().getBoolean("discord.leave_sync.startup_catch_up", true)) {
+                catchUpMissedLeaves();
+            }
 
             plugin.getLogger().info("Discord bot started successfully!");
             return true;
@@ -119,11 +208,140 @@ public class DiscordBot extends ListenerAdapter {
     }
 
     public void stop() {
+        if (shardManager != null) {
+            shardManager.shutdown();
+        }
         if (jda != null) {
             jda.shutdown();
         }
     }
 
+    /**
+     * Waits until every shard has logged in and is ready. build() only starts
+     * the first shard, the others are queued and log in one by one later, so
+     * guilds on them can't be resolved before this returns.
+     */
+    private void awaitAllShards() throws InterruptedException {
+        long timeout = plugin.getConfig().getLong("discord.sharding.startup_timeout", 300);
+        long deadline = System.currentTimeMillis() + timeout * 1000L;
+        while (shardManager.getShardsQueued() > 0 || shardManager.getShardCache().size() < shardManager.getShardsTotal()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Only " + shardManager.getShardCache().size() + " of "
+                        + shardManager.getShardsTotal() + " shard(s) started within " + timeout + " seconds");
+            }
+            Thread.sleep(250L);
+        }
+        for (JDA shard : shardManager.getShards()) {
+            shard.awaitReady();
+        }
+    }
+
+    private Guild getGuildById(String guildId) {
+        return shardManager != null ? shardManager.getGuildById(guildId) : jda.getGuildById(guildId);
+    }
+
+    private MemberCachePolicy createMemberCachePolicy() {
+        String mode = plugin.getConfig().getString("discord.sharding.member_cache", "default");
+        switch (mode.toLowerCase()) {
+            case "none":
+                return MemberCachePolicy.NONE;
+            case "linked":
+                // Only keep members we actually manage, lookups for everyone else go through REST
+                return member -> plugin.getStorageManager().getPlayerId(member.getId()) != null;
+            case "all":
+                return MemberCachePolicy.ALL;
+            default:
+                return MemberCachePolicy.DEFAULT;
+        }
+    }
+
+    /**
+     * Loads the regional guilds from discord.guilds, each with its own verified role.
+     */
+    private void loadAdditionalGuilds() {
+        ConfigurationSection section = plugin.getConfig().getConfigurationSection("discord.guilds");
+        if (section == null) {
+            return;
+        }
+
+        for (String guildId : section.getKeys(false)) {
+            String roleId = section.getString(guildId);
+            Guild additionalGuild = getGuildById(guildId);
+            if (additionalGuild == null) {
+                plugin.getLogger().warning("Could not find additional Discord guild with ID: " + guildId);
+                continue;
+            }
+            Role role = roleId != null ? additionalGuild.getRoleById(roleId) : null;
+            if (role == null) {
+                plugin.getLogger().warning("Could not find verified role " + roleId + " in guild " + additionalGuild.getName());
+                continue;
+            }
+            if (!additionalGuild.getSelfMember().canInteract(role)) {
+                plugin.getLogger().warning("The bot's role must be above the verified role in guild " + additionalGuild.getName() + ", role grants there will fail");
+            }
+            verifiedRoles.put(guildId, role);
+            plugin.getLogger().info("Managing verified role '" + role.getName() + "' in guild " + additionalGuild.getName());
+        }
+    }
+
+    /**
+     * Grants the verified role in every managed guild except the given one.
+     */
+    private void grantAdditionalRoles(String discordId, Guild except) {
+        for (Map.Entry<String, Role> entry : verifiedRoles.entrySet()) {
+            if (entry.getKey().equals(except.getId())) {
+                continue;
+            }
+            Role role = entry.getValue();
+            Guild target = role.getGuild();
+            plugin.getRestScheduler().submit(RestScheduler.Priority.ROLE, () -> target.retrieveMemberById(discordId).submit(false)
+                    .thenCompose(member -> target.addRoleToMember(member, role).submit(false)))
+                .whenComplete((success, error) -> {
+                    if (error != null && !isUnknownMember(error)) {
+                        plugin.getLogger().warning("Failed to add verified role in " + target.getName() + ": " + error.getMessage());
+                    }
+                });
+        }
+    }
+
+    /**
+     * Removes the verified role from the Discord user in every managed guild.
+     */
+    public void removeVerifiedRoles(String discordId) {
+        if (plugin.getSharedGateway().isFollower()) {
+            plugin.getSharedGateway().forwardRoleRemoval(discordId);
+            return;
+        }
+        for (Role role : verifiedRoles.values()) {
+            Guild target = role.getGuild();
+            plugin.getRestScheduler().submit(RestScheduler.Priority.ROLE, () -> target.retrieveMemberById(discordId).submit(false)
+                    .thenCompose(member -> target.removeRoleFromMember(member, role).submit(false).thenApply(success -> member)))
+                .whenComplete((member, error) -> {
+                    if (error != null) {
+                        if (!isUnknownMember(error)) {
+                            plugin.getLogger().warning("Failed to remove role in " + target.getName() + ": " + error.getMessage());
+                        }
+                    } else if (plugin.getConfig().getBoolean("settings.debug", false)) {
+                        plugin.getLogger().info("Removed verified role from " + member.getUser().getName() + " in " + target.getName());
+                    }
+                });
+        }
+    }
+
+    /**
+     * Members who aren't in a guild simply have nothing to grant or remove there.
+     */
+    private static boolean isUnknownMember(Throwable error) {
+        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+        return cause instanceof ErrorResponseException
+                && ((ErrorResponseException) cause).getErrorResponse() == ErrorResponse.UNKNOWN_MEMBER;
+    }
+
+    @Override
+    public void onGenericEvent(GenericEvent event) {
+        shardEvents.computeIfAbsent(event.getJDA().getShardInfo().getShardId(), id -> new LongAdder()).increment();
+    }
+
     @Override
     public void onSlashCommandInteraction(SlashCommandInteractionEvent event) {
         if (!event.getName().equals("verify")) return;
@@ -131,7 +349,16 @@ public class DiscordBot extends ListenerAdapter {
         OptionMapping codeOption = event.getOption("code");
         if (codeOption == null) {
             String message = plugin.getConfig().getString("messages.discord.no-code", "❌ Please provide a verification code!\n• Generate one in Minecraft using `/verify`");
-            event.reply(message).setEphemeral(true).queue();
+            reply(event, message);
+            return;
+        }
+
+        // Route the interaction to the verified role of the guild it came from
+        Guild guild = event.getGuild();
+        Role verifiedRole = getVerifiedRole(guild);
+        if (verifiedRole == null) {
+            String message = plugin.getConfig().getString("messages.discord.guild-not-managed", "❌ Verification is not available in this server.");
+            reply(event, message);
             return;
         }
 
@@ -147,16 +374,23 @@ public class DiscordBot extends ListenerAdapter {
                 + "2. Drag the bot's role (named '" + guild.getSelfMember().getEffectiveName() + "') above the verified role\n"
                 + "3. Try verification again after this is fixed\n\n"
                 + "If you've already verified in Minecraft but are having issues here, use `/verify force` in Minecraft to reset your verification.";
-            event.reply(message).setEphemeral(true).queue();
+            reply(event, message);
             plugin.getLogger().severe("Role hierarchy error: Bot cannot assign the verified role to " + event.getUser().getName() + " because its role is too low in the hierarchy.");
             return;
         }
 
-        // Verify the code and get the UUID
-        String uuidStr = plugin.getVerificationManager().verifyCodeAndGetUUID(discordId, code);
+        // Codes issued on shared gateway followers are linked on the follower, everything else here
+        SharedGateway.RemoteCode remote = plugin.getSharedGateway().claimRemoteCode(code);
+        String uuidStr;
+        if (remote != null) {
+            plugin.getSharedGateway().notifyRedeemed(remote, discordId);
+            uuidStr = remote.playerId().toString();
+        } else {
+            uuidStr = plugin.getVerificationManager().verifyCodeAndGetUUID(discordId, code);
+        }
         if (uuidStr == null) {
             String message = plugin.getConfig().getString("messages.discord.verify-failure", "❌ Invalid or expired verification code!\n• Please generate a new code in Minecraft using `/verify`\n• Make sure to use the code within 5 minutes");
-            event.reply(message).setEphemeral(true).queue();
+            reply(event, message);
             return;
         }
 
@@ -164,63 +398,70 @@ public class DiscordBot extends ListenerAdapter {
             // Add the verified role
             Member member = event.getMember();
             if (member != null) {
-                guild.addRoleToMember(member, verifiedRole).queue(success -> {
-                    // Update nickname if enabled
-                    if (plugin.getConfig().getBoolean("discord.sync_nickname", true)) {
-                        UUID uuid = UUID.fromString(uuidStr);
-                        Player player = Bukkit.getPlayer(uuid);
-                        if (player != null) {
-                            String format = plugin.getConfig().getString("discord.nickname_format", "%player%");
-                            String nickname = format.replace("%player%", player.getName());
-                            
-                            // Check if bot has nickname permission
-                            if (guild.getSelfMember().canInteract(member)) {
-                                guild.modifyNickname(member, nickname).queue(
-                                    nicknameSuccess -> {
-                                        if (plugin.getConfig().getBoolean("settings.debug", false)) {
-                                            plugin.getLogger().info("Updated nickname for " + member.getUser().getName() + " to " + nickname);
-                                        }
-                                        String message = plugin.getConfig().getString("messages.discord.verify-success", "✅ Successfully verified!\n• Your Minecraft account is now linked\n• You've been given the verified role\n• Your nickname has been updated\n• You can now access verified-only features");
-                                        event.reply(message).setEphemeral(true).queue();
-                                    },
-                                    error -> {
-                                        plugin.getLogger().warning("Failed to update nickname: " + error.getMessage());
-                                        String message = plugin.getConfig().getString("messages.discord.verify-success", "✅ Successfully verified!\n• Your Minecraft account is now linked\n• You've been given the verified role\n• You can now access verified-only features\n• Note: Could not update nickname (insufficient permissions)");
-                                        event.reply(message).setEphemeral(true).queue();
-                                    }
-                                );
-                            } else {
-                                plugin.getLogger().warning("Bot does not have permission to modify nicknames for this user");
-                                String message = plugin.getConfig().getString("messages.discord.verify-success", "✅ Successfully verified!\n• Your Minecraft account is now linked\n• You've been given the verified role\n• You can now access verified-only features\n• Note: Could not update nickname (insufficient permissions)");
-                                event.reply(message).setEphemeral(true).queue();
-                            }
-                        } else {
-                            String message = plugin.getConfig().getString("messages.discord.verify-success", "✅ Successfully verified!\n• Your Minecraft account is now linked\n• You've been given the verified role\n• You can now access verified-only features");
-                            event.reply(message).setEphemeral(true).queue();
+                // Acknowledge within Discord's deadline first, the role grant may wait behind other role updates
+                CompletableFuture<?> deferred = plugin.getRestScheduler().submit(RestScheduler.Priority.INTERACTION,
+                        () -> event.deferReply(true).submit(false));
+                plugin.getRestScheduler().submit(RestScheduler.Priority.ROLE, () -> guild.addRoleToMember(member, verifiedRole).submit(false))
+                    .whenComplete((success, error) -> {
+                        if (error != null) {
+                            plugin.getLogger().severe("Error while adding role: " + error.getMessage());
+                            String message = plugin.getConfig().getString("messages.discord.error", "❌ An error occurred while processing your request.\n• Please try again later\n• If the issue persists, contact an administrator");
+                            editReply(event, deferred, message);
+                            return;
                         }
-                    } else {
+
+                        // Answer first, everything else is lower priority than the interaction
                         String message = plugin.getConfig().getString("messages.discord.verify-success", "✅ Successfully verified!\n• Your Minecraft account is now linked\n• You've been given the verified role\n• You can now access verified-only features");
-                        event.reply(message).setEphemeral(true).queue();
-                    }
-                }, error -> {
-                    plugin.getLogger().severe("Error while adding role: " + error.getMessage());
-                    String message = plugin.getConfig().getString("messages.discord.error", "❌ An error occurred while processing your request.\n• Please try again later\n• If the issue persists, contact an administrator");
-                    event.reply(message).setEphemeral(true).queue();
-                });
+                        editReply(event, deferred, message);
+                        grantAdditionalRoles(discordId, guild);
+
+                        // Nickname updates go through the sync queue as cosmetic requests
+                        UUID uuid = UUID.fromString(uuidStr);
+                        plugin.getAsyncExecutor().runOnMain(() -> {
+                            Player player = Bukkit.getPlayer(uuid);
+                            if (player != null) {
+                                plugin.getNicknameSyncManager().requestSync(uuid, player.getName());
+                            }
+                        });
+                    });
             } else {
                 String message = plugin.getConfig().getString("messages.discord.error", "❌ An error occurred while processing your request.\n• Please try again later\n• If the issue persists, contact an administrator");
-                event.reply(message).setEphemeral(true).queue();
+                reply(event, message);
             }
         } catch (Exception e) {
             plugin.getLogger().severe("Error while verifying user: " + e.getMessage());
             String message = plugin.getConfig().getString("messages.discord.error", "❌ An error occurred while processing your request.\n• Please try again later\n• If the issue persists, contact an administrator");
-            event.reply(message).setEphemeral(true).queue();
+            reply(event, message);
         }
     }
 
+    private void reply(SlashCommandInteractionEvent event, String message) {
+        plugin.getRestScheduler().submit(RestScheduler.Priority.INTERACTION, () -> event.reply(message).setEphemeral(true).submit(false))
+            .exceptionally(error -> {
+                plugin.getLogger().warning("Failed to reply to interaction: " + error.getMessage());
+                return null;
+            });
+    }
+
+    /**
+     * Replaces the deferred "thinking" reply once the deferral has gone through.
+     */
+    private void editReply(SlashCommandInteractionEvent event, CompletableFuture<?> deferred, String message) {
+        deferred.thenCompose(hook -> plugin.getRestScheduler().submit(RestScheduler.Priority.INTERACTION,
+                () -> event.getHook().editOriginal(message).submit(false)))
+            .exceptionally(error -> {
+                plugin.getLogger().warning("Failed to reply to interaction: " + error.getMessage());
+                return null;
+            });
+    }
+
     @Override
     public void onGuildMemberRemove(GuildMemberRemoveEvent event) {
+        // Only leaving the main guild ends a link, regional guilds just lose their role with the member
         if (!event.getGuild().getId().equals(guild.getId())) {
+            if (verifiedRoles.containsKey(event.getGuild().getId()) && plugin.getConfig().getBoolean("settings.debug", false)) {
+                plugin.getLogger().info("User " + event.getUser().getId() + " left additional guild " + event.getGuild().getName());
+            }
             return;
         }
         
@@ -229,11 +470,47 @@ public class DiscordBot extends ListenerAdapter {
             return;
         }
         
-        // Find the player UUID associated with this Discord ID
-        plugin.getStorageManager().findAndUnlinkDiscordId(discordId);
+        // Unlinking is batched by the leave task instead of hitting storage per event
+        plugin.getMemberLeaveTask().enqueue(discordId);
+        plugin.getSharedGateway().broadcastLeave(discordId);
         
         if (plugin.getConfig().getBoolean("settings.debug", false)) {
-            plugin.getLogger().info("User left Discord server, unlinked Discord ID: " + discordId);
+            plugin.getLogger().info("User left Discord server, queued unlink for Discord ID: " + discordId);
         }
     }
-} 
\ No newline at end of file
+
+    private void catchUpMissedLeaves() {
+        Set<String> linked = plugin.getStorageManager().getLinkedDiscordIds();
+        findDepartedMembers(linked, departed -> {
+            plugin.getLogger().info("Found " + departed.size() + " linked Discord user(s) who left while the server was offline");
+            plugin.getMemberLeaveTask().enqueueAll(departed);
+        });
+    }
+
+    /**
+     * Loads the main guild's member list and passes on the given Discord IDs that
+     * are no longer in it, if any. Also used by the shared gateway leader to catch
+     * up followers on leaves they missed while disconnected.
+     */
+    public void findDepartedMembers(Set<String> discordIds, Consumer<Set<String>> onDeparted) {
+        if (discordIds.isEmpty() || guild == null) {
+            return;
+        }
+
+        Set<String> departed = new HashSet<>(discordIds);
+        guild.loadMembers().onSuccess(members -> {
+            // An empty result means the member list couldn't be loaded, never treat it as everyone leaving
+            if (members.isEmpty()) {
+                plugin.getLogger().warning("Skipping leave catch-up: guild member list came back empty");
+                return;
+            }
+
+            for (Member member : members) {
+                departed.remove(member.getId());
+            }
+            if (!departed.isEmpty()) {
+                onDeparted.accept(departed);
+            }
+        }).onError(error -> plugin.getLogger().warning("Failed to load guild members for leave catch-up: " + error.getMessage()));
+    }
+}
@@ -0,0 +1,131 @@
+package dev.guk.discordlink.discord;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * One socket between the gateway leader and a follower. Outgoing messages are
+ * queued and written as a single frame per flush; incoming frames are read by
+ * a dedicated thread.
+ */
+class GatewayConnection {
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final ConcurrentLinkedQueue<GatewayProtocol.Message> outbound;
+    private volatile boolean closed;
+    private volatile boolean authenticated;
+    private volatile String name;
+
+    GatewayConnection(Socket socket) throws IOException {
+        this.socket = socket;
+        this.socket.setTcpNoDelay(true);
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        this.outbound = new ConcurrentLinkedQueue<>();
+        this.name = socket.getRemoteSocketAddress().toString();
+    }
+
+    void send(GatewayProtocol.Message message) {
+        if (!closed) {
+            outbound.offer(message);
+        }
+    }
+
+    /**
+     * Writes everything queued so far as one frame. Only the flush thread calls this.
+     *
+     * @return false if the connection is closed or the write failed
+     */
+    boolean flush() {
+        if (closed) {
+            return false;
+        }
+        if (outbound.isEmpty()) {
+            return true;
+        }
+
+        List<GatewayProtocol.Message> batch = new ArrayList<>();
+        GatewayProtocol.Message message;
+        while ((message = outbound.poll()) != null) {
+            batch.add(message);
+        }
+        try {
+            GatewayProtocol.writeBatch(out, batch);
+            out.flush();
+            return true;
+        } catch (IOException e) {
+            close();
+            return false;
+        }
+    }
+
+    /**
+     * Blocks reading frames and hands each message to the handler until the
+     * connection closes. A handler failure is logged and only costs that one
+     * message, the rest of the batch and the connection carry on.
+     */
+    void readLoop(Handler handler, Logger logger) {
+        try {
+            while (!closed) {
+                for (GatewayProtocol.Message message : GatewayProtocol.readBatch(in)) {
+                    try {
+                        handler.onMessage(this, message);
+                    } catch (RuntimeException e) {
+                        logger.log(Level.SEVERE, "Error handling shared gateway " + message.type() + " message from " + name, e);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Remote side went away, the owner notices through isClosed
+        } finally {
+            close();
+        }
+    }
+
+    void close() {
+        closed = true;
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // Already closed
+        }
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    boolean isAuthenticated() {
+        return authenticated;
+    }
+
+    void authenticate(String name) {
+        this.name = name;
+        this.authenticated = true;
+        try {
+            // The handshake timeout is over, followers may go quiet between batches
+            socket.setSoTimeout(0);
+        } catch (SocketException e) {
+            close();
+        }
+    }
+
+    String getName() {
+        return name;
+    }
+
+    interface Handler {
+        void onMessage(GatewayConnection connection, GatewayProtocol.Message message);
+    }
+}
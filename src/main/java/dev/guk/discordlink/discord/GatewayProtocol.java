@@ -0,0 +1,105 @@
+package dev.guk.discordlink.discord;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wire format between shared gateway instances. Messages are sent in
+ * batches, one length-prefixed frame per batch:
+ *
+ * <pre>
+ * int frameLength
+ * int messageCount
+ * messageCount x (byte type, UTF first, UTF second, long value)
+ * </pre>
+ *
+ * Absent strings are written as empty strings.
+ */
+public final class GatewayProtocol {
+    // Frames larger than this are treated as a corrupt stream
+    private static final int MAX_FRAME_BYTES = 4 * 1024 * 1024;
+
+    public enum Type {
+        /** Follower → leader: first message on a connection. first = server name, second = secret */
+        HELLO,
+        /** Follower → leader: a verification code issued on the follower. first = UUID, second = code, value = expiry millis */
+        REGISTER_CODE,
+        /** Follower → leader: remove the verified roles of a Discord user. first = Discord ID */
+        REMOVE_ROLES,
+        /** Follower → leader: set a Discord nickname. first = Discord ID, second = nickname */
+        NICKNAME,
+        /** Follower → leader: send a direct message. first = Discord ID, second = message */
+        DIRECT_MESSAGE,
+        /** Leader → follower: a code issued by the follower was redeemed. first = UUID, second = Discord ID */
+        REDEEMED,
+        /** Leader → follower: a Discord user left the main guild. first = Discord ID */
+        MEMBER_LEFT,
+        /** Follower → leader: desired mapped roles of a member. first = Discord ID, second = comma-separated role IDs, value = 1 for a sweep */
+        ROLES,
+        /** Follower → leader: Discord IDs linked on the follower, checked for missed leaves. first = comma-separated Discord IDs, value = 1 on the last chunk */
+        LINKED_IDS
+    }
+
+    private static final Type[] TYPES = Type.values();
+
+    public record Message(Type type, String first, String second, long value) {
+        public static Message of(Type type, String first, String second) {
+            return new Message(type, first, second, 0L);
+        }
+    }
+
+    private GatewayProtocol() {
+    }
+
+    /**
+     * Encodes a batch into a single frame. The caller flushes the stream.
+     */
+    public static void writeBatch(DataOutputStream out, List<Message> batch) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * batch.size() + 4);
+        DataOutputStream frame = new DataOutputStream(buffer);
+        frame.writeInt(batch.size());
+        for (Message message : batch) {
+            frame.writeByte(message.type().ordinal());
+            frame.writeUTF(message.first() != null ? message.first() : "");
+            frame.writeUTF(message.second() != null ? message.second() : "");
+            frame.writeLong(message.value());
+        }
+        out.writeInt(buffer.size());
+        buffer.writeTo(out);
+    }
+
+    /**
+     * Reads one frame, blocking until it is complete.
+     */
+    public static List<Message> readBatch(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 4 || length > MAX_FRAME_BYTES) {
+            throw new IOException("Invalid gateway frame length " + length);
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+
+        DataInputStream frame = new DataInputStream(new ByteArrayInputStream(payload));
+        int count = frame.readInt();
+        if (count < 0 || count > length) {
+            throw new IOException("Invalid gateway message count " + count);
+        }
+        List<Message> batch = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int type = frame.readUnsignedByte();
+            if (type >= TYPES.length) {
+                throw new IOException("Unknown gateway message type " + type);
+            }
+            String first = frame.readUTF();
+            String second = frame.readUTF();
+            long value = frame.readLong();
+            batch.add(new Message(TYPES[type], first.isEmpty() ? null : first, second.isEmpty() ? null : second, value));
+        }
+        return batch;
+    }
+}
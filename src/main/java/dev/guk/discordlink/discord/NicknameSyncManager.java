@@ -0,0 +1,217 @@
+package dev.guk.discordlink.discord;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bukkit.scheduler.BukkitTask;
+
+import dev.guk.discordlink.DiscordLink;
+import dev.guk.discordlink.managers.StorageManager;
+import net.dv8tion.jda.api.entities.Guild;
+
+/**
+ * Keeps Discord nicknames in line with Minecraft names. The last nickname
+ * pushed to Discord is stored per link, and only real differences are
+ * queued. The queue is keyed by Discord ID so repeated requests for the
+ * same member collapse, and it is drained at a fixed per-second budget.
+ */
+public class NicknameSyncManager {
+    // Discord rejects nicknames longer than this
+    private static final int MAX_NICKNAME_LENGTH = 32;
+
+    private final DiscordLink plugin;
+    private final LinkedHashMap<String, PendingNickname> pending;
+    private final AtomicLong sent;
+    private final AtomicLong skipped;
+    private BukkitTask task;
+
+    public NicknameSyncManager(DiscordLink plugin) {
+        this.plugin = plugin;
+        this.pending = new LinkedHashMap<>();
+        this.sent = new AtomicLong();
+        this.skipped = new AtomicLong();
+    }
+
+    public void start() {
+        this.task = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, this::drain, 20L, 20L);
+    }
+
+    public void stop() {
+        if (this.task != null) {
+            this.task.cancel();
+            this.task = null;
+        }
+        synchronized (pending) {
+            pending.clear();
+        }
+    }
+
+    private boolean isEnabled() {
+        return plugin.getConfig().getBoolean("discord.sync_nickname", true);
+    }
+
+    /**
+     * Renders the configured nickname format for a Minecraft name.
+     */
+    public String render(String playerName) {
+        String nickname = plugin.getConfig().getString("discord.nickname_format", "%player%").replace("%player%", playerName);
+        return nickname.length() > MAX_NICKNAME_LENGTH ? nickname.substring(0, MAX_NICKNAME_LENGTH) : nickname;
+    }
+
+    /**
+     * Queues a nickname update if the rendered name differs from the last one synced.
+     *
+     * @return true if an update was queued, false if nothing needed to change
+     */
+    public boolean requestSync(UUID playerId, String playerName) {
+        StorageManager storage = plugin.getStorageManager();
+        String discordId = storage.getDiscordId(playerId);
+        if (!isEnabled() || discordId == null || playerName == null) {
+            return false;
+        }
+
+        storage.setLastKnownName(playerId, playerName);
+        String nickname = render(playerName);
+        if (nickname.equals(storage.getSyncedNickname(playerId))) {
+            skipped.incrementAndGet();
+            return false;
+        }
+
+        if (plugin.getSharedGateway().isFollower()) {
+            // The leader owns the Discord connection, treat the forwarded update as applied
+            plugin.getSharedGateway().forwardNickname(discordId, nickname);
+            sent.incrementAndGet();
+            markSynced(playerId, nickname);
+            return true;
+        }
+
+        synchronized (pending) {
+            pending.put(discordId, new PendingNickname(playerId, nickname));
+        }
+        return true;
+    }
+
+    /**
+     * Queues a nickname update forwarded by a shared gateway follower. The
+     * follower already checked it against its own synced nickname.
+     */
+    public void queueRemote(String discordId, String nickname) {
+        if (discordId == null || nickname == null) {
+            return;
+        }
+        synchronized (pending) {
+            pending.put(discordId, new PendingNickname(null, nickname));
+        }
+    }
+
+    /**
+     * Records the nickname as the one currently shown on Discord.
+     */
+    public void markSynced(UUID playerId, String nickname) {
+        // Updates forwarded by a follower are tracked in the follower's storage
+        if (playerId != null) {
+            plugin.getStorageManager().setSyncedNickname(playerId, nickname);
+        }
+    }
+
+    /**
+     * Walks every link using the last known Minecraft name and queues the ones
+     * whose Discord nickname is out of date. Runs on a background thread.
+     */
+    public ResyncResult resyncAll() {
+        int pageSize = Math.max(1, plugin.getConfig().getInt("admin.export.page_size", 1000));
+        long queued = 0;
+        long upToDate = 0;
+        long unknownName = 0;
+
+        StorageManager storage = plugin.getStorageManager();
+        StorageManager.LinkCursor cursor = storage.openCursor();
+        while (cursor.hasNext()) {
+            List<StorageManager.LinkRecord> page = cursor.nextPage(pageSize);
+            for (StorageManager.LinkRecord record : page) {
+                String name = storage.getLastKnownName(record.playerId());
+                if (name == null) {
+                    unknownName++;
+                } else if (requestSync(record.playerId(), name)) {
+                    queued++;
+                } else {
+                    upToDate++;
+                }
+            }
+        }
+        return new ResyncResult(queued, upToDate, unknownName);
+    }
+
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    public long getSkippedCount() {
+        return skipped.get();
+    }
+
+    public int getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    private void drain() {
+        Guild guild = plugin.getDiscordBot() != null ? plugin.getDiscordBot().getGuild() : null;
+        if (guild == null) {
+            return;
+        }
+
+        int budget = Math.max(1, plugin.getConfig().getInt("discord.nickname_sync.max_per_second", 2));
+        synchronized (pending) {
+            Iterator<Map.Entry<String, PendingNickname>> iterator = pending.entrySet().iterator();
+            while (budget-- > 0 && iterator.hasNext()) {
+                Map.Entry<String, PendingNickname> entry = iterator.next();
+                iterator.remove();
+                apply(guild, entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void apply(Guild guild, String discordId, PendingNickname update) {
+        plugin.getRestScheduler().submit(RestScheduler.Priority.COSMETIC, () -> guild.retrieveMemberById(discordId).submit(false)).thenAccept(member -> {
+            // The owner and members above the bot can never be renamed, remember the
+            // attempt so they aren't retried on every join
+            if (member.isOwner() || !guild.getSelfMember().canInteract(member)) {
+                markSynced(update.playerId(), update.nickname());
+                return;
+            }
+            if (update.nickname().equals(member.getNickname())) {
+                skipped.incrementAndGet();
+                markSynced(update.playerId(), update.nickname());
+                return;
+            }
+
+            sent.incrementAndGet();
+            plugin.getRestScheduler().submit(RestScheduler.Priority.COSMETIC, () -> guild.modifyNickname(member, update.nickname()).submit(false))
+                .whenComplete((success, error) -> {
+                    if (error != null) {
+                        plugin.getLogger().warning("Failed to update nickname: " + error.getMessage());
+                        return;
+                    }
+                    markSynced(update.playerId(), update.nickname());
+                    if (plugin.getConfig().getBoolean("settings.debug", false)) {
+                        plugin.getLogger().info("Updated nickname for " + member.getUser().getName() + " to " + update.nickname());
+                    }
+                });
+        }).exceptionally(error -> {
+            if (plugin.getConfig().getBoolean("settings.debug", false)) {
+                plugin.getLogger().info("Skipping nickname sync for Discord ID " + discordId + ": " + error.getMessage());
+            }
+            return null;
+        });
+    }
+
+    private record PendingNickname(UUID playerId, String nickname) {}
+
+    public record ResyncResult(long queued, long upToDate, long unknownName) {}
+}
@@ -0,0 +1,231 @@
+package dev.guk.discordlink.discord;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import net.dv8tion.jda.api.exceptions.RateLimitedException;
+
+/**
+ * Central outbound scheduler for Discord REST calls. Requests are queued by
+ * priority class and started highest class first, each class with its own
+ * concurrency limit, so cosmetic updates can never hold back interaction
+ * replies during a storm.
+ *
+ * Lower classes are deferred while a higher class is waiting, and requests are
+ * dropped once they have waited longer than their class allows or their queue
+ * is full. A rate limit only backs off the class that hit it, the others keep
+ * going since their calls mostly use different routes.
+ *
+ * Requests are plain {@code Supplier<CompletableFuture<T>>}s, so the
+ * scheduler can run against a fake REST layer. JDA actions must be passed as
+ * {@code submit(false)}: a plain {@code submit()} waits out rate limits inside
+ * JDA and never reports them, while {@code submit(false)} fails with a
+ * {@link RateLimitedException} when the route is rate limited. That failure
+ * puts the request back at the front of its queue and starts a backoff.
+ */
+public class RestScheduler {
+    public enum Priority {
+        INTERACTION("interaction", 10, 1000, 0),
+        ROLE("role", 4, 5000, 0),
+        DIRECT_MESSAGE("direct_message", 2, 2000, 60000),
+        COSMETIC("cosmetic", 1, 1000, 30000);
+
+        private final String configKey;
+        private final int defaultConcurrency;
+        private final int defaultQueueSize;
+        private final long defaultMaxWaitMillis;
+
+        Priority(String configKey, int defaultConcurrency, int defaultQueueSize, long defaultMaxWaitMillis) {
+            this.configKey = configKey;
+            this.defaultConcurrency = defaultConcurrency;
+            this.defaultQueueSize = defaultQueueSize;
+            this.defaultMaxWaitMillis = defaultMaxWaitMillis;
+        }
+    }
+
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    private final ScheduledExecutorService timer;
+    private final Map<Priority, ClassState> classes;
+
+    /**
+     * @param settings section with one subsection per priority class
+     *                 (concurrency, queue_size, max_wait_ms), may be null for defaults
+     * @param timer    used to resume dispatching after a rate limit backoff
+     */
+    public RestScheduler(ConfigurationSection settings, ScheduledExecutorService timer) {
+        this.timer = timer;
+        this.classes = new EnumMap<>(Priority.class);
+        for (Priority priority : PRIORITIES) {
+            ConfigurationSection section = settings != null ? settings.getConfigurationSection(priority.configKey) : null;
+            int concurrency = section != null ? section.getInt("concurrency", priority.defaultConcurrency) : priority.defaultConcurrency;
+            int queueSize = section != null ? section.getInt("queue_size", priority.defaultQueueSize) : priority.defaultQueueSize;
+            long maxWait = section != null ? section.getLong("max_wait_ms", priority.defaultMaxWaitMillis) : priority.defaultMaxWaitMillis;
+            classes.put(priority, new ClassState(Math.max(1, concurrency), Math.max(1, queueSize), maxWait));
+        }
+    }
+
+    /**
+     * Queues a request. The returned future completes with the request's result,
+     * or exceptionally with a {@link RejectedExecutionException} if it was dropped.
+     */
+    public <T> CompletableFuture<T> submit(Priority priority, Supplier<CompletableFuture<T>> request) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ClassState state = classes.get(priority);
+        synchronized (this) {
+            if (state.queue.size() >= state.queueSize) {
+                state.dropped.incrementAndGet();
+                result.completeExceptionally(new RejectedExecutionException(priority + " queue is full"));
+                return result;
+            }
+            state.queue.addLast(new Pending<>(request, result, System.nanoTime()));
+        }
+        pump();
+        return result;
+    }
+
+    /**
+     * Starts as many queued requests as the class limits allow.
+     */
+    private void pump() {
+        while (true) {
+            Pending<?> next = null;
+            ClassState nextState = null;
+            List<Pending<?>> stale = new ArrayList<>(0);
+            synchronized (this) {
+                long now = System.nanoTime();
+                boolean higherWaiting = false;
+
+                for (Priority priority : PRIORITIES) {
+                    ClassState state = classes.get(priority);
+                    dropStale(state, now, stale);
+                    if (state.queue.isEmpty()) {
+                        continue;
+                    }
+                    // A class waiting out its own rate limit doesn't hold back the ones below it
+                    if (now - state.backoffUntil < 0) {
+                        continue;
+                    }
+                    if (!higherWaiting && state.inFlight < state.concurrency) {
+                        next = state.queue.pollFirst();
+                        nextState = state;
+                        nextState.inFlight++;
+                        break;
+                    }
+                    higherWaiting = true;
+                }
+            }
+
+            // Complete outside the lock, callers may chain more requests from their callbacks
+            for (Pending<?> dropped : stale) {
+                dropped.result.completeExceptionally(new RejectedExecutionException("Dropped after waiting too long in the queue"));
+            }
+            if (next == null) {
+                return;
+            }
+            start(nextState, next);
+        }
+    }
+
+    private void dropStale(ClassState state, long now, List<Pending<?>> stale) {
+        if (state.maxWaitMillis <= 0) {
+            return;
+        }
+        long maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(state.maxWaitMillis);
+        while (!state.queue.isEmpty() && now - state.queue.peekFirst().enqueuedAt > maxWaitNanos) {
+            stale.add(state.queue.pollFirst());
+            state.dropped.incrementAndGet();
+        }
+    }
+
+    private <T> void start(ClassState state, Pending<T> pending) {
+        long waited = System.nanoTime() - pending.enqueuedAt;
+        state.started.incrementAndGet();
+        state.totalWaitNanos.addAndGet(waited);
+        state.maxWaitNanos.accumulateAndGet(waited, Math::max);
+
+        CompletableFuture<T> call;
+        try {
+            call = pending.request.get();
+        } catch (Throwable t) {
+            call = CompletableFuture.failedFuture(t);
+        }
+
+        call.whenComplete((value, error) -> {
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            synchronized (this) {
+                state.inFlight--;
+                if (cause instanceof RateLimitedException) {
+                    // Put the request back at the front and hold its class until the bucket resets
+                    long retryAfter = Math.max(1, ((RateLimitedException) cause).getRetryAfter());
+                    long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryAfter);
+                    if (until - state.backoffUntil > 0) {
+                        state.backoffUntil = until;
+                    }
+                    state.rateLimited.incrementAndGet();
+                    state.queue.addFirst(pending);
+                    timer.schedule(this::pump, retryAfter, TimeUnit.MILLISECONDS);
+                }
+            }
+
+            if (!(cause instanceof RateLimitedException)) {
+                if (cause != null) {
+                    pending.result.completeExceptionally(cause);
+                } else {
+                    pending.result.complete(value);
+                }
+            }
+            pump();
+        });
+    }
+
+    /**
+     * Returns a snapshot of queue depth and wait times for a priority class.
+     */
+    public synchronized Stats getStats(Priority priority) {
+        ClassState state = classes.get(priority);
+        long started = state.started.get();
+        return new Stats(state.queue.size(), state.inFlight, started, state.dropped.get(), state.rateLimited.get(),
+                started == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(state.totalWaitNanos.get() / started),
+                TimeUnit.NANOSECONDS.toMillis(state.maxWaitNanos.get()));
+    }
+
+    public record Stats(int queued, int inFlight, long started, long dropped, long rateLimited,
+                        long averageWaitMillis, long maxWaitMillis) {}
+
+    private static class ClassState {
+        private final int concurrency;
+        private final int queueSize;
+        private final long maxWaitMillis;
+        private final ArrayDeque<Pending<?>> queue = new ArrayDeque<>();
+        private final AtomicLong started = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong rateLimited = new AtomicLong();
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+        private int inFlight;
+        // System.nanoTime() deadline, the same clock the timer uses, so the resume pump never fires early
+        private long backoffUntil;
+
+        private ClassState(int concurrency, int queueSize, long maxWaitMillis) {
+            this.concurrency = concurrency;
+            this.queueSize = queueSize;
+            this.maxWaitMillis = maxWaitMillis;
+            this.backoffUntil = System.nanoTime();
+        }
+    }
+
+    private record Pending<T>(Supplier<CompletableFuture<T>> request, CompletableFuture<T> result, long enqueuedAt) {}
+}
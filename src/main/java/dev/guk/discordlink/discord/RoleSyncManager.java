@@ -0,0 +1,329 @@
+package dev.guk.discordlink.discord;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import dev.guk.discordlink.DiscordLink;
+import dev.guk.discordlink.listeners.LuckPermsListener;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Role;
+
+/**
+ * Mirrors Minecraft permission groups as Discord roles in the main guild.
+ * Each mapping ties a permission node (e.g. group.vip) to a role ID. A
+ * linked player's desired set of mapped roles is diffed against the roles
+ * the member has, and the difference is applied with a single member roles
+ * update. Requests are keyed by Discord ID and coalesced over a short window.
+ * Players are checked on join, on link, whenever LuckPerms recalculates their
+ * permissions if it is installed, and by a periodic sweep of everyone online.
+ *
+ * Roles outside the mapping table, including the verified role, are never touched.
+ */
+public class RoleSyncManager {
+    private final DiscordLink plugin;
+    private final Map<String, String> mappings;
+    private final Set<String> managedRoleIds;
+    private final LinkedHashMap<String, PendingRoles> pending;
+    // Last role set applied per Discord ID, lets joins skip REST entirely when nothing changed
+    private final Map<String, Set<String>> applied;
+    private final AtomicLong lookups;
+    private final AtomicLong updates;
+    private final AtomicLong unchanged;
+    private final AtomicLong sweepLookups;
+    private final AtomicLong sweepUpdates;
+    private volatile long lastSweepAt;
+    private volatile int lastSweepPlayers;
+    private BukkitTask drainTask;
+    private BukkitTask sweepTask;
+    private LuckPermsListener luckPermsListener;
+
+    public RoleSyncManager(DiscordLink plugin) {
+        this.plugin = plugin;
+        this.mappings = new LinkedHashMap<>();
+        // A list rather than a map, permission nodes contain dots which config paths would split on
+        for (Map<?, ?> entry : plugin.getConfig().getMapList("discord.role_sync.mappings")) {
+            Object permission = entry.get("permission");
+            Object roleId = entry.get("role");
+            if (permission != null && roleId != null && !roleId.toString().isEmpty()) {
+                mappings.put(permission.toString(), roleId.toString());
+            }
+        }
+        this.managedRoleIds = new HashSet<>(mappings.values());
+        this.pending = new LinkedHashMap<>();
+        this.applied = new ConcurrentHashMap<>();
+        this.lookups = new AtomicLong();
+        this.updates = new AtomicLong();
+        this.unchanged = new AtomicLong();
+        this.sweepLookups = new AtomicLong();
+        this.sweepUpdates = new AtomicLong();
+    }
+
+    public boolean isEnabled() {
+        return plugin.getConfig().getBoolean("discord.role_sync.enabled", false) && !mappings.isEmpty();
+    }
+
+    public void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        long window = Math.max(1, plugin.getConfig().getLong("discord.role_sync.coalesce_ticks", 40));
+        this.drainTask = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, this::drain, window, window);
+
+        long sweepInterval = plugin.getConfig().getLong("discord.role_sync.sweep_interval", 30) * 60L * 20L;
+        if (sweepInterval > 0) {
+            this.sweepTask = plugin.getServer().getScheduler().runTaskTimer(plugin, this::sweep, sweepInterval, sweepInterval);
+        }
+        // Rank changes of online players would otherwise wait for the next sweep
+        if (plugin.getServer().getPluginManager().getPlugin("LuckPerms") != null) {
+            this.luckPermsListener = new LuckPermsListener(plugin);
+            this.luckPermsListener.register();
+        }
+        plugin.getLogger().info("Syncing " + mappings.size() + " permission group(s) to Discord roles");
+    }
+
+    public void stop() {
+        if (this.drainTask != null) {
+            this.drainTask.cancel();
+            this.drainTask = null;
+        }
+        if (this.sweepTask != null) {
+            this.sweepTask.cancel();
+            this.sweepTask = null;
+        }
+        if (this.luckPermsListener != null) {
+            this.luckPermsListener.unregister();
+            this.luckPermsListener = null;
+        }
+        synchronized (pending) {
+            pending.clear();
+        }
+    }
+
+    /**
+     * Works out the player's mapped roles from their permissions and queues an
+     * update if they differ from what was last applied. Must run on the main thread.
+     *
+     * @param sweep part of a full sweep, checks the member's actual roles even if
+     *              nothing changed locally and counts towards the sweep's REST usage
+     */
+    public void requestSync(Player player, boolean sweep) {
+        if (!isEnabled()) {
+            return;
+        }
+        String discordId = plugin.getStorageManager().getDiscordId(player.getUniqueId());
+        if (discordId == null) {
+            return;
+        }
+
+        Set<String> desired = new HashSet<>();
+        for (Map.Entry<String, String> mapping : mappings.entrySet()) {
+            if (player.hasPermission(mapping.getKey())) {
+                desired.add(mapping.getValue());
+            }
+        }
+        if (!sweep && desired.equals(applied.get(discordId))) {
+            unchanged.incrementAndGet();
+            return;
+        }
+        queue(discordId, desired, sweep);
+    }
+
+    /**
+     * Queues removal of every mapped role, used when a link ends.
+     */
+    public void requestClear(String discordId) {
+        if (isEnabled() && discordId != null) {
+            queue(discordId, Collections.emptySet(), false);
+        }
+    }
+
+    /**
+     * Queues a role set forwarded by a shared gateway follower.
+     */
+    public void queueRemote(String discordId, Set<String> desired, boolean sweep) {
+        if (isEnabled() && discordId != null) {
+            // Only roles from our own table may be changed, whatever the follower sent
+            Set<String> allowed = new HashSet<>(desired);
+            allowed.retainAll(managedRoleIds);
+            queue(discordId, allowed, sweep);
+        }
+    }
+
+    private void queue(String discordId, Set<String> desired, boolean sweep) {
+        if (plugin.getSharedGateway().isFollower()) {
+            plugin.getSharedGateway().forwardRoles(discordId, desired, sweep);
+            remember(discordId, desired);
+            return;
+        }
+        synchronized (pending) {
+            // A newer request for the same member replaces the older one
+            pending.put(discordId, new PendingRoles(desired, sweep));
+        }
+    }
+
+    /**
+     * Queues every online linked player for a full check against Discord.
+     */
+    public int sweep() {
+        if (!isEnabled()) {
+            return 0;
+        }
+        sweepLookups.set(0);
+        sweepUpdates.set(0);
+        lastSweepAt = System.currentTimeMillis();
+
+        int players = 0;
+        for (Player player : plugin.getServer().getOnlinePlayers()) {
+            if (plugin.getVerificationManager().isVerified(player.getUniqueId())) {
+                requestSync(player, true);
+                players++;
+            }
+        }
+        lastSweepPlayers = players;
+        if (plugin.getConfig().getBoolean("settings.debug", false)) {
+            plugin.getLogger().info("Role sync sweep queued " + players + " linked player(s)");
+        }
+        return players;
+    }
+
+    /**
+     * Forgets what was applied for a player who left, their next join re-checks Discord.
+     */
+    public void removePlayer(UUID playerId) {
+        String discordId = plugin.getStorageManager().getDiscordId(playerId);
+        if (discordId != null) {
+            applied.remove(discordId);
+        }
+    }
+
+    public int getMappingCount() {
+        return mappings.size();
+    }
+
+    public int getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(lookups.get(), updates.get(), unchanged.get(),
+                lastSweepAt, lastSweepPlayers, sweepLookups.get(), sweepUpdates.get());
+    }
+
+    private void drain() {
+        Guild guild = plugin.getDiscordBot() != null ? plugin.getDiscordBot().getGuild() : null;
+        if (guild == null) {
+            return;
+        }
+
+        int budget = Math.max(1, plugin.getConfig().getInt("discord.role_sync.batch_size", 50));
+        List<Map.Entry<String, PendingRoles>> batch = new ArrayList<>();
+        synchronized (pending) {
+            Iterator<Map.Entry<String, PendingRoles>> iterator = pending.entrySet().iterator();
+            while (budget-- > 0 && iterator.hasNext()) {
+                Map.Entry<String, PendingRoles> entry = iterator.next();
+                iterator.remove();
+                batch.add(Map.entry(entry.getKey(), entry.getValue()));
+            }
+        }
+        for (Map.Entry<String, PendingRoles> entry : batch) {
+            apply(guild, entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void apply(Guild guild, String discordId, PendingRoles request) {
+        Member cached = guild.getMemberById(discordId);
+        if (cached != null) {
+            diffAndUpdate(guild, cached, discordId, request);
+            return;
+        }
+
+        count(lookups, request.sweep() ? sweepLookups : null);
+        plugin.getRestScheduler().submit(RestScheduler.Priority.ROLE, () -> guild.retrieveMemberById(discordId).submit(false))
+            .whenComplete((member, error) -> {
+                if (error != null) {
+                    // Members who left have nothing to sync, the leave handler unlinks them
+                    if (plugin.getConfig().getBoolean("settings.debug", false)) {
+                        plugin.getLogger().info("Skipping role sync for Discord ID " + discordId + ": " + error.getMessage());
+                    }
+                    return;
+                }
+                diffAndUpdate(guild, member, discordId, request);
+            });
+    }
+
+    private void diffAndUpdate(Guild guild, Member member, String discordId, PendingRoles request) {
+        List<Role> toAdd = new ArrayList<>();
+        List<Role> toRemove = new ArrayList<>();
+        Set<String> current = new HashSet<>();
+        for (Role role : member.getRoles()) {
+            current.add(role.getId());
+            if (managedRoleIds.contains(role.getId()) && !request.desired().contains(role.getId())) {
+                toRemove.add(role);
+            }
+        }
+        for (String roleId : request.desired()) {
+            Role role = current.contains(roleId) ? null : guild.getRoleById(roleId);
+            if (role != null) {
+                toAdd.add(role);
+            }
+        }
+
+        if (toAdd.isEmpty() && toRemove.isEmpty()) {
+            unchanged.incrementAndGet();
+            remember(discordId, request.desired());
+            return;
+        }
+
+        count(updates, request.sweep() ? sweepUpdates : null);
+        plugin.getRestScheduler().submit(RestScheduler.Priority.ROLE, () -> guild.modifyMemberRoles(member, toAdd, toRemove).submit(false))
+            .whenComplete((success, error) -> {
+                if (error != null) {
+                    plugin.getLogger().warning("Failed to sync roles for " + member.getUser().getName() + ": " + error.getMessage());
+                    return;
+                }
+                remember(discordId, request.desired());
+                if (plugin.getConfig().getBoolean("settings.debug", false)) {
+                    plugin.getLogger().info("Synced roles for " + member.getUser().getName() + ": +" + toAdd.size() + " -" + toRemove.size());
+                }
+            });
+    }
+
+    private void remember(String discordId, Set<String> desired) {
+        // Nothing to remember for members without mapped roles, e.g. after an unlink
+        if (desired.isEmpty()) {
+            applied.remove(discordId);
+        } else {
+            applied.put(discordId, desired);
+        }
+    }
+
+    private static void count(AtomicLong total, AtomicLong sweep) {
+        total.incrementAndGet();
+        if (sweep != null) {
+            sweep.incrementAndGet();
+        }
+    }
+
+    private record PendingRoles(Set<String> desired, boolean sweep) {}
+
+    /**
+     * REST usage since startup, and for the most recent sweep.
+     */
+    public record Stats(long lookups, long updates, long unchanged,
+                        long lastSweepAt, int lastSweepPlayers, long sweepLookups, long sweepUpdates) {}
+}
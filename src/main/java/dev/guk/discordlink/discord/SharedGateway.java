@@ -0,0 +1,612 @@
+package dev.guk.discordlink.discord;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import dev.guk.discordlink.DiscordLink;
+
+/**
+ * Lets several backends on one host share a single Discord connection.
+ *
+ * The instance holding the lock file in the shared directory is the leader:
+ * it runs the bot and listens on a loopback port. Every other instance is a
+ * follower that forwards role changes, nickname updates, DMs and its
+ * verification codes to the leader, and is told when one of its codes was
+ * redeemed or a linked member left. On every (re)connect a follower sends its
+ * linked Discord IDs so the leader can report leaves it missed while it was
+ * disconnected. The OS releases the lock when the leader
+ * exits, so followers keep trying it and the first to get it takes over.
+ *
+ * Without discord.shared_gateway.enabled this only starts the bot.
+ */
+public class SharedGateway {
+    private static final String LOCK_FILE = "gateway.lock";
+    private static final String PORT_FILE = "gateway.port";
+    // Keeps each LINKED_IDS message well inside writeUTF's 64KB limit
+    private static final int LINKED_IDS_PER_MESSAGE = 1000;
+    private static final long MAX_PROMOTION_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    // How long an accepted socket may take to send HELLO
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 5000;
+
+    public enum Mode {
+        STANDALONE,
+        LEADER,
+        FOLLOWER
+    }
+
+    private final DiscordLink plugin;
+    private final Set<GatewayConnection> followers;
+    private final Map<String, RemoteCode> remoteCodes;
+    private final Map<UUID, String> remoteCodesByPlayer;
+    // Linked IDs received so far from each follower, checked once the last chunk is in
+    private final Map<GatewayConnection, Set<String>> linkChecks;
+    private final ConcurrentLinkedQueue<GatewayProtocol.Message> toLeader;
+    private final AtomicInteger toLeaderCount;
+    private volatile Mode mode;
+    private File directory;
+    private String secret;
+    private String serverName;
+    private int maxPending;
+    private FileChannel lockChannel;
+    private FileLock lock;
+    private ServerSocket server;
+    private volatile GatewayConnection leader;
+    private ScheduledExecutorService timer;
+    private long electionIntervalMillis;
+    // Only touched on the gateway timer
+    private int failedPromotions;
+    private long nextPromotionAttempt;
+
+    public SharedGateway(DiscordLink plugin) {
+        this.plugin = plugin;
+        this.followers = ConcurrentHashMap.newKeySet();
+        this.remoteCodes = new ConcurrentHashMap<>();
+        this.remoteCodesByPlayer = new ConcurrentHashMap<>();
+        this.linkChecks = new ConcurrentHashMap<>();
+        this.toLeader = new ConcurrentLinkedQueue<>();
+        this.toLeaderCount = new AtomicInteger();
+        this.mode = Mode.STANDALONE;
+    }
+
+    /**
+     * Starts the bot directly, or joins the shared gateway as leader or follower.
+     *
+     * @return false if this instance should have a Discord connection but couldn't start one
+     */
+    public boolean start() {
+        if (!plugin.getConfig().getBoolean("discord.shared_gateway.enabled", false)) {
+            return plugin.getDiscordBot().start();
+        }
+
+        String path = plugin.getConfig().getString("discord.shared_gateway.directory", "");
+        this.directory = path.isEmpty() ? plugin.getDataFolder() : new File(path);
+        this.secret = plugin.getConfig().getString("discord.shared_gateway.secret", "");
+        if (secret.isEmpty()) {
+            // Without a secret any local process could send DMs or change roles through the leader
+            plugin.getLogger().severe("discord.shared_gateway.secret must be set when the shared gateway is enabled");
+            return false;
+        }
+        this.serverName = plugin.getConfig().getString("discord.shared_gateway.server_name", "");
+        if (serverName.isEmpty()) {
+            serverName = "backend-" + plugin.getServer().getPort();
+        }
+        this.maxPending = Math.max(1, plugin.getConfig().getInt("discord.shared_gateway.max_pending", 10000));
+        long batchInterval = Math.max(5, plugin.getConfig().getLong("discord.shared_gateway.batch_interval_ms", 50));
+        long electionInterval = Math.max(1, plugin.getConfig().getLong("discord.shared_gateway.election_interval", 5));
+        this.electionIntervalMillis = TimeUnit.SECONDS.toMillis(electionInterval);
+
+        try {
+            directory.mkdirs();
+            lockChannel = FileChannel.open(new File(directory, LOCK_FILE).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            plugin.getLogger().severe("Could not open shared gateway lock file in " + directory + ": " + e.getMessage());
+            return false;
+        }
+
+        this.timer = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("DiscordLink-Gateway").factory());
+        if (tryLock()) {
+            if (!becomeLeader()) {
+                return false;
+            }
+        } else {
+            mode = Mode.FOLLOWER;
+            plugin.getLogger().info("Another server holds the shared Discord gateway, running as follower '" + serverName + "'");
+            connectToLeader();
+        }
+
+        timer.scheduleWithFixedDelay(this::flush, batchInterval, batchInterval, TimeUnit.MILLISECONDS);
+        timer.scheduleWithFixedDelay(this::maintain, electionInterval, electionInterval, TimeUnit.SECONDS);
+        return true;
+    }
+
+    public void stop() {
+        if (timer != null) {
+            // Let a running flush or maintenance pass finish, the final flush below must not overlap it
+            timer.shutdown();
+            try {
+                if (!timer.awaitTermination(5, TimeUnit.SECONDS)) {
+                    plugin.getLogger().warning("Shared gateway timer did not stop in time, interrupting it");
+                    timer.shutdownNow();
+                    timer.awaitTermination(1, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // Hands anything still queued for the leader or followers to the sockets
+            flush();
+        }
+        if (server != null) {
+            try {
+                server.close();
+            } catch (IOException ignored) {
+                // Already closed
+            }
+            new File(directory, PORT_FILE).delete();
+        }
+        for (GatewayConnection follower : followers) {
+            follower.close();
+        }
+        followers.clear();
+        GatewayConnection current = leader;
+        if (current != null) {
+            current.close();
+        }
+        releaseLock();
+        if (lockChannel != null) {
+            try {
+                lockChannel.close();
+            } catch (IOException ignored) {
+                // Closing also releases the lock
+            }
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public boolean isFollower() {
+        return mode == Mode.FOLLOWER;
+    }
+
+    public boolean isConnectedToLeader() {
+        GatewayConnection current = leader;
+        return current != null && !current.isClosed();
+    }
+
+    public int getFollowerCount() {
+        return followers.size();
+    }
+
+    // Follower side
+
+    /**
+     * Tells the leader about a verification code issued on this server.
+     */
+    public void registerCode(UUID playerId, String code, long expiresAt) {
+        forward(new GatewayProtocol.Message(GatewayProtocol.Type.REGISTER_CODE, playerId.toString(), code, expiresAt));
+    }
+
+    public void forwardRoleRemoval(String discordId) {
+        forward(GatewayProtocol.Message.of(GatewayProtocol.Type.REMOVE_ROLES, discordId, null));
+    }
+
+    public void forwardNickname(String discordId, String nickname) {
+        forward(GatewayProtocol.Message.of(GatewayProtocol.Type.NICKNAME, discordId, nickname));
+    }
+
+    public void forwardDirectMessage(String discordId, String message) {
+        forward(GatewayProtocol.Message.of(GatewayProtocol.Type.DIRECT_MESSAGE, discordId, message));
+    }
+
+    public void forwardRoles(String discordId, Set<String> roleIds, boolean sweep) {
+        forward(new GatewayProtocol.Message(GatewayProtocol.Type.ROLES, discordId, String.join(",", roleIds), sweep ? 1L : 0L));
+    }
+
+    private void forward(GatewayProtocol.Message message) {
+        if (mode != Mode.FOLLOWER) {
+            return;
+        }
+        // Kept while the leader is unreachable and replayed once one is back
+        if (toLeaderCount.incrementAndGet() > maxPending) {
+            toLeaderCount.decrementAndGet();
+            plugin.getLogger().warning("Shared gateway queue is full, dropping " + message.type() + " request");
+            return;
+        }
+        toLeader.offer(message);
+    }
+
+    private void connectToLeader() {
+        int port;
+        try {
+            port = Integer.parseInt(Files.readString(new File(directory, PORT_FILE).toPath(), StandardCharsets.UTF_8).trim());
+        } catch (IOException | NumberFormatException e) {
+            // The leader may not have written its port yet
+            return;
+        }
+
+        GatewayConnection connection;
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 2000);
+            connection = new GatewayConnection(socket);
+        } catch (IOException e) {
+            closeQuietly(socket);
+            if (plugin.getConfig().getBoolean("settings.debug", false)) {
+                plugin.getLogger().info("Could not reach the shared gateway leader on port " + port + ": " + e.getMessage());
+            }
+            return;
+        }
+
+        connection.send(GatewayProtocol.Message.of(GatewayProtocol.Type.HELLO, serverName, secret));
+        // A new leader knows nothing about codes issued before it took over
+        long now = System.currentTimeMillis();
+        for (Map.Entry<UUID, String> entry : plugin.getVerificationManager().getPendingCodes().entrySet()) {
+            long expiresAt = plugin.getVerificationManager().getCodeExpiry(entry.getKey());
+            if (expiresAt > now) {
+                connection.send(new GatewayProtocol.Message(GatewayProtocol.Type.REGISTER_CODE,
+                        entry.getKey().toString(), entry.getValue(), expiresAt));
+            }
+        }
+        // MEMBER_LEFT is only sent to connected followers, let the leader check for any we missed
+        if (plugin.getConfig().getBoolean("discord.leave_sync.startup_catch_up", true)) {
+            sendLinkedIds(connection);
+        }
+        leader = connection;
+        plugin.getLogger().info("Connected to the shared Discord gateway on port " + port);
+
+        Thread.ofVirtual().name("DiscordLink-Gateway-Leader").start(() -> {
+            connection.readLoop(this::handleFromLeader, plugin.getLogger());
+            if (leader == connection) {
+                leader = null;
+                if (mode == Mode.FOLLOWER) {
+                    plugin.getLogger().warning("Lost connection to the shared Discord gateway leader, waiting for a new one");
+                }
+            }
+        });
+    }
+
+    private void sendLinkedIds(GatewayConnection connection) {
+        List<String> linked = new ArrayList<>(plugin.getStorageManager().getLinkedDiscordIds());
+        for (int start = 0; start < linked.size(); start += LINKED_IDS_PER_MESSAGE) {
+            int end = Math.min(linked.size(), start + LINKED_IDS_PER_MESSAGE);
+            connection.send(new GatewayProtocol.Message(GatewayProtocol.Type.LINKED_IDS,
+                    String.join(",", linked.subList(start, end)), null, end == linked.size() ? 1L : 0L));
+        }
+    }
+
+    private void handleFromLeader(GatewayConnection connection, GatewayProtocol.Message message) {
+        switch (message.type()) {
+            case REDEEMED -> {
+                UUID playerId = parseUuid(message.first());
+                if (playerId != null && message.second() != null) {
+                    plugin.getVerificationManager().completeRemoteLink(playerId, message.second());
+                }
+            }
+            case MEMBER_LEFT -> plugin.getMemberLeaveTask().enqueue(message.first());
+            default -> plugin.getLogger().warning("Unexpected " + message.type() + " message from the gateway leader");
+        }
+    }
+
+    // Leader side
+
+    /**
+     * Takes a code issued on a follower if it exists, hasn't expired, and its
+     * follower is still connected. Called from JDA threads.
+     */
+    public RemoteCode claimRemoteCode(String code) {
+        if (mode != Mode.LEADER || code == null) {
+            return null;
+        }
+        RemoteCode remote = remoteCodes.remove(code);
+        if (remote == null) {
+            return null;
+        }
+        remoteCodesByPlayer.remove(remote.playerId(), code);
+        if (remote.expiresAt() < System.currentTimeMillis() || remote.connection().isClosed()) {
+            return null;
+        }
+        return remote;
+    }
+
+    /**
+     * Tells the follower that issued a code that it was redeemed by a Discord user.
+     */
+    public void notifyRedeemed(RemoteCode remote, String discordId) {
+        remote.connection().send(GatewayProtocol.Message.of(GatewayProtocol.Type.REDEEMED, remote.playerId().toString(), discordId));
+    }
+
+    /**
+     * Lets every follower unlink a Discord user who left the main guild.
+     */
+    public void broadcastLeave(String discordId) {
+        if (mode != Mode.LEADER) {
+            return;
+        }
+        GatewayProtocol.Message message = GatewayProtocol.Message.of(GatewayProtocol.Type.MEMBER_LEFT, discordId, null);
+        for (GatewayConnection follower : followers) {
+            follower.send(message);
+        }
+    }
+
+    private boolean becomeLeader() {
+        if (!plugin.getDiscordBot().start()) {
+            plugin.getDiscordBot().stop();
+            releaseLock();
+            return false;
+        }
+
+        try {
+            int port = plugin.getConfig().getInt("discord.shared_gateway.port", 0);
+            server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+            Files.writeString(new File(directory, PORT_FILE).toPath(), String.valueOf(server.getLocalPort()), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            plugin.getLogger().severe("Could not open the shared gateway port: " + e.getMessage());
+            plugin.getDiscordBot().stop();
+            releaseLock();
+            return false;
+        }
+
+        mode = Mode.LEADER;
+        Thread.ofVirtual().name("DiscordLink-Gateway-Accept").start(this::acceptLoop);
+        plugin.getLogger().info("Holding the shared Discord gateway as '" + serverName + "' on port " + server.getLocalPort());
+        return true;
+    }
+
+    /**
+     * Takes over after the previous leader went away. Runs on the gateway timer.
+     */
+    private void promote() {
+        GatewayConnection previous = leader;
+        leader = null;
+        if (previous != null) {
+            previous.close();
+        }
+        plugin.getLogger().info("Shared Discord gateway leader is gone, taking over");
+        if (!becomeLeader()) {
+            // Each attempt starts the whole bot, back off so a bad token or busy port isn't retried every interval
+            failedPromotions++;
+            long delay = Math.min(MAX_PROMOTION_BACKOFF_MILLIS, electionIntervalMillis << Math.min(failedPromotions, 16));
+            nextPromotionAttempt = System.currentTimeMillis() + delay;
+            plugin.getLogger().severe("Could not take over the shared Discord gateway, staying a follower and retrying in "
+                    + TimeUnit.MILLISECONDS.toSeconds(delay) + "s");
+            return;
+        }
+        failedPromotions = 0;
+
+        // Requests queued while no leader was reachable are now ours to send
+        toLeaderCount.set(0);
+        GatewayProtocol.Message message;
+        while ((message = toLeader.poll()) != null) {
+            if (message.type() == GatewayProtocol.Type.REGISTER_CODE) {
+                continue;
+            }
+            try {
+                handleFromFollower(null, message);
+            } catch (RuntimeException e) {
+                plugin.getLogger().severe("Error replaying queued " + message.type() + " request: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void acceptLoop() {
+        while (!server.isClosed()) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (IOException e) {
+                // Closed on shutdown
+                continue;
+            }
+            GatewayConnection connection;
+            try {
+                // Cleared once the follower authenticates, a silent socket can't hold a reader thread forever
+                socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+                connection = new GatewayConnection(socket);
+            } catch (IOException e) {
+                closeQuietly(socket);
+                continue;
+            }
+            Thread.ofVirtual().name("DiscordLink-Gateway-Follower").start(() -> {
+                followers.add(connection);
+                connection.readLoop(this::handleFromFollower, plugin.getLogger());
+                followers.remove(connection);
+                linkChecks.remove(connection);
+                remoteCodes.values().removeIf(remote -> remote.connection() == connection);
+                if (connection.isAuthenticated()) {
+                    plugin.getLogger().info("Server '" + connection.getName() + "' left the shared Discord gateway");
+                }
+            });
+        }
+    }
+
+    /**
+     * Handles a request from a follower, or from this instance's own backlog after
+     * a promotion when connection is null.
+     */
+    private void handleFromFollower(GatewayConnection connection, GatewayProtocol.Message message) {
+        if (connection != null && !connection.isAuthenticated()) {
+            if (message.type() == GatewayProtocol.Type.HELLO && isSecret(secret, message.second())) {
+                connection.authenticate(message.first() != null ? message.first() : connection.getName());
+                plugin.getLogger().info("Server '" + connection.getName() + "' joined the shared Discord gateway");
+            } else {
+                plugin.getLogger().warning("Rejected shared gateway connection from " + connection.getName() + ": bad handshake");
+                connection.close();
+            }
+            return;
+        }
+
+        switch (message.type()) {
+            case REGISTER_CODE -> {
+                UUID playerId = parseUuid(message.first());
+                if (playerId == null || message.second() == null) {
+                    return;
+                }
+                // A new code replaces the player's previous one, as it does locally
+                String previous = remoteCodesByPlayer.put(playerId, message.second());
+                if (previous != null) {
+                    remoteCodes.remove(previous);
+                }
+                remoteCodes.put(message.second(), new RemoteCode(playerId, message.value(), connection));
+            }
+            case REMOVE_ROLES -> plugin.getDiscordBot().removeVerifiedRoles(message.first());
+            case NICKNAME -> plugin.getNicknameSyncManager().queueRemote(message.first(), message.second());
+            case DIRECT_MESSAGE -> plugin.getDirectMessageDispatcher().send(message.first(), message.second());
+            case ROLES -> {
+                Set<String> roleIds = new HashSet<>();
+                if (message.second() != null) {
+                    roleIds.addAll(Arrays.asList(message.second().split(",")));
+                }
+                plugin.getRoleSyncManager().queueRemote(message.first(), roleIds, message.value() == 1L);
+            }
+            case LINKED_IDS -> {
+                if (connection == null) {
+                    return;
+                }
+                Set<String> linked = linkChecks.computeIfAbsent(connection, ignored -> new HashSet<>());
+                if (message.first() != null) {
+                    linked.addAll(Arrays.asList(message.first().split(",")));
+                }
+                if (message.value() == 1L) {
+                    linkChecks.remove(connection);
+                    plugin.getDiscordBot().findDepartedMembers(linked, departed -> {
+                        plugin.getLogger().info("Server '" + connection.getName() + "' missed " + departed.size()
+                                + " linked Discord user(s) leaving, catching it up");
+                        for (String discordId : departed) {
+                            connection.send(GatewayProtocol.Message.of(GatewayProtocol.Type.MEMBER_LEFT, discordId, null));
+                        }
+                    });
+                }
+            }
+            default -> plugin.getLogger().warning("Unexpected " + message.type() + " message from server '"
+                    + (connection != null ? connection.getName() : serverName) + "'");
+        }
+    }
+
+    // Shared
+
+    private void flush() {
+        if (mode == Mode.FOLLOWER) {
+            GatewayConnection current = leader;
+            if (current == null || current.isClosed()) {
+                return;
+            }
+            GatewayProtocol.Message message;
+            while ((message = toLeader.poll()) != null) {
+                toLeaderCount.decrementAndGet();
+                current.send(message);
+            }
+            current.flush();
+        } else if (mode == Mode.LEADER) {
+            for (GatewayConnection follower : followers) {
+                follower.flush();
+            }
+        }
+    }
+
+    private void maintain() {
+        try {
+            if (mode == Mode.FOLLOWER) {
+                if (System.currentTimeMillis() >= nextPromotionAttempt && tryLock()) {
+                    promote();
+                } else if (!isConnectedToLeader()) {
+                    connectToLeader();
+                }
+            } else if (mode == Mode.LEADER) {
+                purgeExpiredCodes();
+            }
+        } catch (Exception e) {
+            plugin.getLogger().severe("Error in shared gateway maintenance: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private void purgeExpiredCodes() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, RemoteCode>> iterator = remoteCodes.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, RemoteCode> entry = iterator.next();
+            if (entry.getValue().expiresAt() < now) {
+                iterator.remove();
+                remoteCodesByPlayer.remove(entry.getValue().playerId(), entry.getKey());
+            }
+        }
+    }
+
+    private boolean tryLock() {
+        try {
+            lock = lockChannel.tryLock();
+            return lock != null;
+        } catch (IOException | OverlappingFileLockException e) {
+            return false;
+        }
+    }
+
+    private void releaseLock() {
+        try {
+            if (lock != null) {
+                lock.release();
+                lock = null;
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not release the shared gateway lock: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Checks the secret presented in a follower's HELLO. An empty expected secret never matches.
+     */
+    static boolean isSecret(String expected, String presented) {
+        // Constant time, so the secret can't be guessed byte by byte from response timing
+        return expected != null && !expected.isEmpty() && presented != null
+                && MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8), presented.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // Nothing left to release
+        }
+    }
+
+    private static UUID parseUuid(String value) {
+        try {
+            return value != null ? UUID.fromString(value) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A verification code issued on a follower, waiting to be redeemed in Discord.
+     */
+    public record RemoteCode(UUID playerId, long expiresAt, GatewayConnection connection) {}
+}
@@ -0,0 +1,59 @@
+package dev.guk.discordlink.listeners;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bukkit.entity.Player;
+
+import dev.guk.discordlink.DiscordLink;
+import net.luckperms.api.LuckPermsProvider;
+import net.luckperms.api.event.EventSubscription;
+import net.luckperms.api.event.user.UserDataRecalculateEvent;
+
+/**
+ * Re-checks a player's mapped Discord roles as soon as LuckPerms recalculates
+ * their permissions, so a rank change reaches Discord within one role sync
+ * window instead of waiting for the next join or sweep.
+ *
+ * Only loaded when LuckPerms is installed.
+ */
+public class LuckPermsListener {
+    private final DiscordLink plugin;
+    // Recalculations arrive in bursts, e.g. one per context change, each player is queued once
+    private final Set<UUID> queued;
+    private EventSubscription<UserDataRecalculateEvent> subscription;
+
+    public LuckPermsListener(DiscordLink plugin) {
+        this.plugin = plugin;
+        this.queued = ConcurrentHashMap.newKeySet();
+    }
+
+    public void register() {
+        this.subscription = LuckPermsProvider.get().getEventBus()
+                .subscribe(plugin, UserDataRecalculateEvent.class, this::onUserDataRecalculate);
+    }
+
+    public void unregister() {
+        if (this.subscription != null) {
+            this.subscription.close();
+            this.subscription = null;
+        }
+        queued.clear();
+    }
+
+    private void onUserDataRecalculate(UserDataRecalculateEvent event) {
+        UUID playerId = event.getUser().getUniqueId();
+        if (!queued.add(playerId)) {
+            return;
+        }
+        // LuckPerms fires this off the main thread, permission checks belong on it
+        plugin.getAsyncExecutor().runOnMain(() -> {
+            queued.remove(playerId);
+            Player player = plugin.getServer().getPlayer(playerId);
+            if (player != null) {
+                plugin.getRoleSyncManager().requestSync(player, false);
+            }
+        });
+    }
+}
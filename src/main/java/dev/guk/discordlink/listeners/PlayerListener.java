@@ -3,11 +3,14 @@ package dev.guk.discordlink.listeners;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.BiConsumer;
 
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.Event;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerCommandPreprocessEvent;
 import org.bukkit.event.player.PlayerDropItemEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
@@ -16,6 +19,9 @@ import org.bukkit.event.player.PlayerMoveEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 
 import dev.guk.discordlink.DiscordLink;
+import dev.guk.discordlink.api.TwoFactorEvent;
+import dev.guk.discordlink.managers.AuditManager;
+import dev.guk.discordlink.tasks.TickProfiler;
 import dev.guk.discordlink.utils.ColorUtils;
 
 public class PlayerListener implements Listener {
@@ -26,36 +32,183 @@ public class PlayerListener implements Listener {
         this.plugin = plugin;
     }
 
+    // Handlers are timed per tick by the profiler, the logic lives in the handle methods below
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
+        timed(TickProfiler.Section.JOIN, event, PlayerListener::handlePlayerJoin);
+    }
+
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        timed(TickProfiler.Section.QUIT, event, PlayerListener::handlePlayerQuit);
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onPlayerMove(PlayerMoveEvent event) {
+        timed(TickProfiler.Section.MOVE, event, PlayerListener::handlePlayerMove);
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onPlayerCommand(PlayerCommandPreprocessEvent event) {
+        timed(TickProfiler.Section.COMMAND, event, PlayerListener::handlePlayerCommand);
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onPlayerInteract(PlayerInteractEvent event) {
+        timed(TickProfiler.Section.INTERACT, event, PlayerListener::handlePlayerInteract);
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onPlayerDropItem(PlayerDropItemEvent event) {
+        timed(TickProfiler.Section.DROP_ITEM, event, PlayerListener::handlePlayerDropItem);
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onPlayerCommandServer(PlayerCommandPreprocessEvent event) {
+        timed(TickProfiler.Section.COMMAND, event, PlayerListener::handlePlayerCommandServer);
+    }
+
+    /**
+     * Runs a handler inside a profiler section. Handlers are passed as unbound
+     * method references, which don't capture anything and so cost no allocation per event.
+     */
+    private <E extends Event> void timed(TickProfiler.Section section, E event, BiConsumer<PlayerListener, E> handler) {
+        TickProfiler profiler = plugin.getTickProfiler();
+        profiler.enter();
+        try {
+            handler.accept(this, event);
+        } finally {
+            profiler.exit(section);
+        }
+    }
+
+    /**
+     * Join gate: unverified players are turned away before they enter the world,
+     * with a code they can redeem in Discord before reconnecting. Runs on the
+     * async login thread, so it only touches thread-safe state.
+     */
+    @EventHandler(priority = EventPriority.HIGH)
+    public void onPlayerPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED ||
+            !plugin.getConfig().getBoolean("verification.gate.enabled", false)) {
+            return;
+        }
+
+        UUID playerId = event.getUniqueId();
+        if (plugin.getVerificationManager().isVerified(playerId) || isGateBypassed(playerId, event.getName())) {
+            return;
+        }
+
+        String code = plugin.getVerificationManager().getOrCreateGateCode(playerId);
+        String message = plugin.getConfig().getString("messages.minecraft.verification-gate",
+                "&b=== Discord Verification Required ===\n\n&7Your code: &e&l%code%\n\n&7Use &f/verify %code% &7in our Discord server,\n&7then reconnect to play.");
+        event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, ColorUtils.translate(message.replace("%code%", code)));
+
+        if (plugin.getConfig().getBoolean("settings.debug", false)) {
+            plugin.getLogger().info("Held unverified player " + event.getName() + " at the join gate");
+        }
+    }
+
+    private boolean isGateBypassed(UUID playerId, String name) {
+        // Permissions aren't available before login, bypass is by UUID or name
+        for (String entry : plugin.getConfig().getStringList("verification.gate.bypass_players")) {
+            if (entry.equalsIgnoreCase(name) || entry.equalsIgnoreCase(playerId.toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void handlePlayerJoin(PlayerJoinEvent event) {
         Player player = event.getPlayer();
         
         // Let the VerificationFreezeManager handle player join
         plugin.getVerificationFreezeManager().handlePlayerJoin(player);
+        if (plugin.getVerificationFreezeManager().isFrozen(player.getUniqueId())) {
+            plugin.getVerificationManager().scheduleFreezeReminder(player);
+        }
         
         // Send verification reminder if not verified
         if (!plugin.getVerificationManager().isVerified(player.getUniqueId())) {
             String message = plugin.getConfig().getString("messages.minecraft.not-verified",
                     "§7Please verify your account using §f/verify");
             player.sendMessage(ColorUtils.translate(plugin.getConfig().getString("settings.prefix", "") + message));
-        } 
+            return;
+        }
+
+        // Only queues a Discord update when the rendered nickname or mapped roles actually changed
+        plugin.getNicknameSyncManager().requestSync(player.getUniqueId(), player.getName());
+        plugin.getRoleSyncManager().requestSync(player, false);
+
         // Send 2FA code if verification is required
-        else if (plugin.getConfig().getBoolean("two_factor_auth.enabled", false)) {
-            plugin.getTwoFactorManager().sendTwoFactorCode(player);
+        if (plugin.getConfig().getBoolean("two_factor_auth.enabled", false)) {
+            // Quick reconnects from the same address reuse their trusted session instead of a new DM
+            if (plugin.getTwoFactorSessionManager().handleJoin(player)) {
+                String discordId = plugin.getStorageManager().getDiscordId(player.getUniqueId());
+                plugin.getAuditManager().record(AuditManager.Action.TWO_FACTOR_TRUSTED, player.getUniqueId(), discordId);
+                plugin.getLinkApi().publishTwoFactor(player.getUniqueId(), discordId, TwoFactorEvent.Type.SESSION_TRUSTED);
+                String message = plugin.getConfig().getString("messages.minecraft.two-factor-trusted",
+                        "&a✔ Welcome back! Your recent 2FA session is still valid.");
+                player.sendMessage(ColorUtils.translate(plugin.getConfig().getString("settings.prefix", "") + message));
+            } else {
+                sendTwoFactorCode(player);
+                scheduleTwoFactorExpiry(player);
+            }
         }
     }
+
+    private void scheduleTwoFactorExpiry(Player player) {
+        UUID playerId = player.getUniqueId();
+        long expiry = plugin.getConfig().getLong("two_factor_auth.expiry_time", 120);
+        plugin.getTimingWheel().schedule(playerId, expiry * 20L, () -> {
+            if (!player.isOnline() || isTwoFactorComplete(playerId) ||
+                !plugin.getVerificationManager().isVerified(playerId)) {
+                return;
+            }
+            // A single notice per login, rejoining sends a fresh code
+            String message = plugin.getConfig().getString("messages.minecraft.two-factor-expired",
+                    "&c⏳ Your 2FA code has expired. Rejoin to receive a new code.");
+            player.sendMessage(ColorUtils.translate(plugin.getConfig().getString("settings.prefix", "") + message));
+        });
+    }
+
+    private void sendTwoFactorCode(Player player) {
+        UUID playerId = player.getUniqueId();
+        String discordId = plugin.getStorageManager().getDiscordId(playerId);
+        String code = plugin.getTwoFactorSessionManager().issueCode(playerId);
+        String dm = plugin.getConfig().getString("messages.discord.two-factor-code",
+                "🔐 **2FA Authentication Required**\n\nYour 2FA code: **%code%**\n\nEnter this code in Minecraft to complete login.");
+        // Paced and collapsed like every other DM, followers hand it to the leader's bot
+        plugin.getDirectMessageDispatcher().send(discordId, dm.replace("%code%", code));
+
+        String message = plugin.getConfig().getString("messages.minecraft.two-factor-required",
+                "&e⚠ Please enter the 2FA code sent to your Discord account.\n&7Use: &f/2fa <code>");
+        player.sendMessage(ColorUtils.translate(plugin.getConfig().getString("settings.prefix", "") + message));
+        plugin.getAuditManager().record(AuditManager.Action.TWO_FACTOR_SENT, playerId, discordId);
+        plugin.getLinkApi().publishTwoFactor(playerId, discordId, TwoFactorEvent.Type.CODE_SENT);
+    }
+
+    private boolean isTwoFactorComplete(UUID playerId) {
+        return plugin.getTwoFactorSessionManager().hasCompleted(playerId) ||
+               plugin.getTwoFactorSessionManager().hasTrustedSession(playerId);
+    }
     
-    @EventHandler
-    public void onPlayerQuit(PlayerQuitEvent event) {
+    private void handlePlayerQuit(PlayerQuitEvent event) {
         Player player = event.getPlayer();
+        // Remember completed 2FA before its state is cleared
+        plugin.getTwoFactorSessionManager().handleQuit(player.getUniqueId(),
+                plugin.getTwoFactorSessionManager().hasCompleted(player.getUniqueId()));
         // Clean up 2FA data when player leaves
-        plugin.getTwoFactorManager().removePlayer(player.getUniqueId());
+        plugin.getTwoFactorSessionManager().removePlayer(player.getUniqueId());
         // Clean up verification freeze data
         plugin.getVerificationFreezeManager().removePlayer(player.getUniqueId());
+        // Cancel reminders and expiry notices in one pass
+        plugin.getTimingWheel().cancelAll(player.getUniqueId());
+        plugin.getVerificationManager().removePlayer(player.getUniqueId());
+        plugin.getRoleSyncManager().removePlayer(player.getUniqueId());
     }
     
-    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
-    public void onPlayerMove(PlayerMoveEvent event) {
+    private void handlePlayerMove(PlayerMoveEvent event) {
         Player player = event.getPlayer();
         UUID playerId = player.getUniqueId();
         
@@ -83,7 +236,7 @@ public class PlayerListener implements Listener {
         }
         
         // Prevent moving if 2FA is required but not completed
-        if (!plugin.getTwoFactorManager().isVerified(playerId)) {
+        if (!isTwoFactorComplete(playerId)) {
             // Allow small head movements but prevent walking
             if (event.getFrom().getBlockX() != event.getTo().getBlockX() || 
                 event.getFrom().getBlockY() != event.getTo().getBlockY() || 
@@ -93,8 +246,7 @@ public class PlayerListener implements Listener {
         }
     }
     
-    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
-    public void onPlayerCommand(PlayerCommandPreprocessEvent event) {
+    private void handlePlayerCommand(PlayerCommandPreprocessEvent event) {
         Player player = event.getPlayer();
         UUID playerId = player.getUniqueId();
         String command = event.getMessage().split(" ")[0].toLowerCase();
@@ -131,7 +283,7 @@ public class PlayerListener implements Listener {
         }
         
         // Block commands if 2FA is required but not completed
-        if (!plugin.getTwoFactorManager().isVerified(playerId)) {
+        if (!isTwoFactorComplete(playerId)) {
             // Allow only specific commands
             if (!ALLOWED_COMMANDS.contains(command)) {
                 event.setCancelled(true);
@@ -142,8 +294,7 @@ public class PlayerListener implements Listener {
         }
     }
     
-    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
-    public void onPlayerInteract(PlayerInteractEvent event) {
+    private void handlePlayerInteract(PlayerInteractEvent event) {
         Player player = event.getPlayer();
         UUID playerId = player.getUniqueId();
         
@@ -157,7 +308,7 @@ public class PlayerListener implements Listener {
         if (plugin.getConfig().getBoolean("two_factor_auth.enabled", false) && 
             plugin.getConfig().getBoolean("two_factor_auth.freeze_until_verified", true) &&
             plugin.getVerificationManager().isVerified(playerId) &&
-            !plugin.getTwoFactorManager().isVerified(playerId)) {
+            !isTwoFactorComplete(playerId)) {
             event.setCancelled(true);
             return;
         }
@@ -186,8 +337,7 @@ public class PlayerListener implements Listener {
         }
     }
     
-    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
-    public void onPlayerDropItem(PlayerDropItemEvent event) {
+    private void handlePlayerDropItem(PlayerDropItemEvent event) {
         Player player = event.getPlayer();
         UUID playerId = player.getUniqueId();
         
@@ -209,13 +359,12 @@ public class PlayerListener implements Listener {
         }
         
         // Prevent item dropping if 2FA is required but not completed
-        if (!plugin.getTwoFactorManager().isVerified(playerId)) {
+        if (!isTwoFactorComplete(playerId)) {
             event.setCancelled(true);
         }
     }
     
-    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
-    public void onPlayerCommandServer(PlayerCommandPreprocessEvent event) {
+    private void handlePlayerCommandServer(PlayerCommandPreprocessEvent event) {
         // Check if server command is disabled for unverified players
         if (!plugin.getConfig().getBoolean("server_selector.block_unverified", false)) {
             return;
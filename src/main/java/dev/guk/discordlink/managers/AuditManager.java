@@ -0,0 +1,253 @@
+package dev.guk.discordlink.managers;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.bukkit.scheduler.BukkitTask;
+
+import dev.guk.discordlink.DiscordLink;
+import dev.guk.discordlink.utils.AuditRingBuffer;
+
+/**
+ * Durable audit trail for link lifecycle events. Callers on any thread
+ * publish into a lock-free ring buffer; a single background consumer writes
+ * batches to rotating gzip files in the audit folder.
+ */
+public class AuditManager {
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final String FILE_PREFIX = "audit-";
+    private static final String FILE_SUFFIX = ".log.gz";
+
+    public enum Action {
+        LINK,
+        UNLINK,
+        DISCORD_LEAVE,
+        VERIFY_FAILED,
+        TWO_FACTOR_SENT,
+        TWO_FACTOR_TRUSTED,
+        TWO_FACTOR_COMPLETED
+    }
+
+    private static final Action[] ACTIONS = Action.values();
+
+    private final DiscordLink plugin;
+    private final File folder;
+    private final AuditRingBuffer buffer;
+    private final StringBuilder line;
+    private BufferedWriter writer;
+    private LocalDate currentDay;
+    private long currentBytes;
+    private BukkitTask task;
+
+    public AuditManager(DiscordLink plugin) {
+        this.plugin = plugin;
+        this.folder = new File(plugin.getDataFolder(), "audit");
+        this.buffer = new AuditRingBuffer(plugin.getConfig().getInt("audit.buffer_size", 8192));
+        this.line = new StringBuilder(128);
+    }
+
+    private boolean isEnabled() {
+        return plugin.getConfig().getBoolean("audit.enabled", true);
+    }
+
+    public void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        folder.mkdirs();
+        long interval = Math.max(1, plugin.getConfig().getInt("audit.flush_interval", 2)) * 20L;
+        this.task = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, this::flush, interval, interval);
+    }
+
+    public void stop() {
+        if (this.task != null) {
+            this.task.cancel();
+            this.task = null;
+        }
+        flush();
+        synchronized (this) {
+            closeWriter();
+        }
+    }
+
+    /**
+     * Records an event. Never blocks and never performs I/O on the calling thread.
+     */
+    public void record(Action action, UUID playerId, String discordId) {
+        if (!isEnabled()) {
+            return;
+        }
+        long most = playerId != null ? playerId.getMostSignificantBits() : 0L;
+        long least = playerId != null ? playerId.getLeastSignificantBits() : 0L;
+        buffer.publish(action.ordinal(), System.currentTimeMillis(), most, least, parseDiscordId(discordId));
+    }
+
+    public long getDroppedCount() {
+        return buffer.getDroppedCount();
+    }
+
+    /**
+     * Writes everything currently in the buffer. Only one thread consumes at a time.
+     */
+    public synchronized void flush() {
+        int batchSize = Math.max(1, plugin.getConfig().getInt("audit.batch_size", 1024));
+        try {
+            int handled;
+            do {
+                handled = buffer.drain(this::write, batchSize);
+            } while (handled == batchSize);
+            if (writer != null) {
+                writer.flush();
+            }
+        } catch (UncheckedAuditException e) {
+            plugin.getLogger().severe("Could not write audit log: " + e.getCause().getMessage());
+            closeWriter();
+        } catch (IOException e) {
+            plugin.getLogger().severe("Could not write audit log: " + e.getMessage());
+            closeWriter();
+        }
+
+        long dropped = buffer.getDroppedCount();
+        if (dropped > 0 && plugin.getConfig().getBoolean("settings.debug", false)) {
+            plugin.getLogger().warning("Audit buffer has dropped " + dropped + " event(s) so far, consider raising audit.buffer_size");
+        }
+    }
+
+    /**
+     * Scans the most recent audit files for events matching a UUID or Discord ID.
+     * Blocking, call from a background thread.
+     *
+     * @return up to limit matching lines, oldest first
+     */
+    public List<String> query(String target, int limit) throws IOException {
+        // Make sure events still sitting in the buffer are searchable
+        flush();
+
+        File[] files = folder.listFiles((dir, name) -> name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX));
+        if (files == null || files.length == 0) {
+            return new ArrayList<>();
+        }
+        Arrays.sort(files, Comparator.comparing(File::getName));
+        int maxFiles = Math.max(1, plugin.getConfig().getInt("audit.query_files", 7));
+        int from = Math.max(0, files.length - maxFiles);
+
+        ArrayDeque<String> matches = new ArrayDeque<>(limit);
+        for (int i = from; i < files.length; i++) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(new FileInputStream(files[i])), StandardCharsets.UTF_8))) {
+                String entry;
+                while ((entry = reader.readLine()) != null) {
+                    String[] columns = entry.split("\t");
+                    if (columns.length >= 4 && (columns[2].equalsIgnoreCase(target) || columns[3].equals(target))) {
+                        if (matches.size() == limit) {
+                            matches.pollFirst();
+                        }
+                        matches.addLast(entry);
+                    }
+                }
+            } catch (EOFException e) {
+                // The file currently being written has no gzip trailer yet
+            }
+        }
+        return new ArrayList<>(matches);
+    }
+
+    private void write(int action, long timestamp, long most, long least, long discordId) {
+        try {
+            rotateIfNeeded(timestamp);
+            line.setLength(0);
+            line.append(Instant.ofEpochMilli(timestamp)).append('\t')
+                .append(action >= 0 && action < ACTIONS.length ? ACTIONS[action].name() : "UNKNOWN").append('\t')
+                .append(most == 0L && least == 0L ? "-" : new UUID(most, least).toString()).append('\t')
+                .append(discordId == 0L ? "-" : Long.toUnsignedString(discordId)).append('\n');
+            writer.append(line);
+            currentBytes += line.length();
+        } catch (IOException e) {
+            throw new UncheckedAuditException(e);
+        }
+    }
+
+    private void rotateIfNeeded(long timestamp) throws IOException {
+        LocalDate day = Instant.ofEpochMilli(timestamp).atZone(ZoneId.systemDefault()).toLocalDate();
+        long maxBytes = Math.max(1, plugin.getConfig().getLong("audit.max_file_size_mb", 16)) * 1024L * 1024L;
+        if (writer != null && day.equals(currentDay) && currentBytes < maxBytes) {
+            return;
+        }
+
+        closeWriter();
+        folder.mkdirs();
+        File file = new File(folder, FILE_PREFIX + LocalDateTime.now().format(FILE_TIMESTAMP) + FILE_SUFFIX);
+        for (int i = 1; file.exists(); i++) {
+            file = new File(folder, FILE_PREFIX + LocalDateTime.now().format(FILE_TIMESTAMP) + "-" + i + FILE_SUFFIX);
+        }
+        // Sync flush lets queries read everything written so far before the file is closed
+        writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(file), true), StandardCharsets.UTF_8));
+        currentDay = day;
+        currentBytes = 0;
+        pruneOldFiles();
+    }
+
+    private void pruneOldFiles() {
+        int maxFiles = plugin.getConfig().getInt("audit.max_files", 30);
+        File[] files = folder.listFiles((dir, name) -> name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX));
+        if (maxFiles <= 0 || files == null || files.length <= maxFiles) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparing(File::getName));
+        for (int i = 0; i < files.length - maxFiles; i++) {
+            if (!files[i].delete()) {
+                plugin.getLogger().warning("Could not delete old audit file " + files[i].getName());
+            }
+        }
+    }
+
+    private void closeWriter() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not close audit log: " + e.getMessage());
+        }
+        writer = null;
+    }
+
+    private static long parseDiscordId(String discordId) {
+        if (discordId == null) {
+            return 0L;
+        }
+        try {
+            return Long.parseUnsignedLong(discordId);
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    private static class UncheckedAuditException extends RuntimeException {
+        private UncheckedAuditException(IOException cause) {
+            super(cause);
+        }
+    }
+}
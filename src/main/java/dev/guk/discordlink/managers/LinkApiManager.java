@@ -0,0 +1,125 @@
+package dev.guk.discordlink.managers;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import dev.guk.discordlink.DiscordLink;
+import dev.guk.discordlink.api.DiscordLinkApi;
+import dev.guk.discordlink.api.LinkEvent;
+import dev.guk.discordlink.api.LinkListener;
+import dev.guk.discordlink.api.TwoFactorEvent;
+import dev.guk.discordlink.api.UnlinkEvent;
+
+/**
+ * Backs the public API. Lookups go straight to the storage indexes, and
+ * events are handed to listeners in a copy-on-write list, so publishing with
+ * no subscribers costs one emptiness check and no allocation.
+ */
+public class LinkApiManager implements DiscordLinkApi {
+    private final DiscordLink plugin;
+    private final CopyOnWriteArrayList<LinkListener> listeners;
+
+    public LinkApiManager(DiscordLink plugin) {
+        this.plugin = plugin;
+        this.listeners = new CopyOnWriteArrayList<>();
+    }
+
+    @Override
+    public Optional<String> getDiscordId(UUID playerId) {
+        return Optional.ofNullable(playerId != null ? plugin.getStorageManager().getDiscordId(playerId) : null);
+    }
+
+    @Override
+    public Optional<UUID> getPlayerId(String discordId) {
+        return Optional.ofNullable(discordId != null ? plugin.getStorageManager().getPlayerId(discordId) : null);
+    }
+
+    @Override
+    public boolean isLinked(UUID playerId) {
+        return playerId != null && plugin.getStorageManager().isVerified(playerId);
+    }
+
+    @Override
+    public CompletableFuture<Optional<String>> lookupDiscordId(UUID playerId) {
+        // Everything is indexed in memory, there is no cold path to wait on
+        return CompletableFuture.completedFuture(getDiscordId(playerId));
+    }
+
+    @Override
+    public CompletableFuture<Optional<UUID>> lookupPlayerId(String discordId) {
+        return CompletableFuture.completedFuture(getPlayerId(discordId));
+    }
+
+    @Override
+    public Map<UUID, String> getDiscordIds(Collection<UUID> playerIds) {
+        Map<UUID, String> result = new HashMap<>();
+        for (UUID playerId : playerIds) {
+            String discordId = playerId != null ? plugin.getStorageManager().getDiscordId(playerId) : null;
+            if (discordId != null) {
+                result.put(playerId, discordId);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, UUID> getPlayerIds(Collection<String> discordIds) {
+        Map<String, UUID> result = new HashMap<>();
+        for (String discordId : discordIds) {
+            UUID playerId = discordId != null ? plugin.getStorageManager().getPlayerId(discordId) : null;
+            if (playerId != null) {
+                result.put(discordId, playerId);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Subscription subscribe(LinkListener listener) {
+        listeners.add(listener);
+        return () -> listeners.remove(listener);
+    }
+
+    public void publishLink(UUID playerId, String discordId) {
+        if (!listeners.isEmpty()) {
+            LinkEvent event = new LinkEvent(playerId, discordId);
+            dispatch(listener -> listener.onLink(event));
+        }
+    }
+
+    public void publishUnlink(UUID playerId, String discordId, UnlinkEvent.Reason reason) {
+        if (!listeners.isEmpty()) {
+            UnlinkEvent event = new UnlinkEvent(playerId, discordId, reason);
+            dispatch(listener -> listener.onUnlink(event));
+        }
+    }
+
+    public void publishTwoFactor(UUID playerId, String discordId, TwoFactorEvent.Type type) {
+        if (!listeners.isEmpty()) {
+            TwoFactorEvent event = new TwoFactorEvent(playerId, discordId, type);
+            dispatch(listener -> listener.onTwoFactor(event));
+        }
+    }
+
+    private void dispatch(Consumer<LinkListener> delivery) {
+        for (LinkListener listener : listeners) {
+            try {
+                delivery.accept(listener);
+            } catch (Exception e) {
+                // One broken listener shouldn't stop the others or the link flow
+                plugin.getLogger().severe("Error in link listener " + listener.getClass().getName() + ": " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public void clear() {
+        listeners.clear();
+    }
+}
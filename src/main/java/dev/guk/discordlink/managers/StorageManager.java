@@ -2,8 +2,24 @@ package dev.guk.discordlink.managers;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 
@@ -13,6 +29,15 @@ public class StorageManager {
     private final DiscordLink plugin;
     private final File dataFile;
     private FileConfiguration data;
+    private final AtomicBoolean saveQueued = new AtomicBoolean();
+    private final Object fileLock = new Object();
+    // Reverse index so Discord ID lookups don't have to walk every stored player
+    private final Map<String, UUID> discordIndex = new ConcurrentHashMap<>();
+    // Forward index so link lookups from any thread don't contend on the data lock
+    private final Map<UUID, String> playerIndex = new ConcurrentHashMap<>();
+    // Counted in memory and written with the next save, so bad codes never trigger a write on their own
+    private final AtomicLong verifySuccess = new AtomicLong();
+    private final AtomicLong verifyFailure = new AtomicLong();
 
     public StorageManager(DiscordLink plugin) {
         this.plugin = plugin;
@@ -29,30 +54,163 @@ public class StorageManager {
             }
         }
         this.data = YamlConfiguration.loadConfiguration(dataFile);
+        verifySuccess.set(data.getLong("stats.verify_success", 0L));
+        verifyFailure.set(data.getLong("stats.verify_failure", 0L));
+        buildIndex();
     }
 
+    private void buildIndex() {
+        discordIndex.clear();
+        playerIndex.clear();
+        ConfigurationSection players = data.getConfigurationSection("players");
+        if (players == null) {
+            return;
+        }
+        for (String uuidStr : players.getKeys(false)) {
+            String discordId = players.getString(uuidStr + ".discord_id");
+            if (discordId == null) {
+                continue;
+            }
+            try {
+                UUID playerId = UUID.fromString(uuidStr);
+                discordIndex.put(discordId, playerId);
+                playerIndex.put(playerId, discordId);
+            } catch (IllegalArgumentException e) {
+                plugin.getLogger().warning("Invalid UUID stored in data: " + uuidStr);
+            }
+        }
+    }
+
+    /**
+     * Schedules a write of data.yml on the async executor. Saves requested
+     * while one is already queued are folded into it.
+     */
     private void saveData() {
-        try {
-            data.save(dataFile);
-        } catch (IOException e) {
-            plugin.getLogger().severe("Could not save data.yml: " + e.getMessage());
+        if (saveQueued.compareAndSet(false, true)) {
+            plugin.getAsyncExecutor().run(this::flush);
+        }
+    }
+
+    /**
+     * Writes the current data to disk on the calling thread. Used directly on shutdown.
+     */
+    public void flush() {
+        saveQueued.set(false);
+        String contents;
+        synchronized (this) {
+            data.set("stats.verify_success", verifySuccess.get());
+            data.set("stats.verify_failure", verifyFailure.get());
+            contents = data.saveToString();
+        }
+
+        synchronized (fileLock) {
+            File tempFile = new File(dataFile.getParentFile(), dataFile.getName() + ".tmp");
+            try {
+                Files.writeString(tempFile.toPath(), contents, StandardCharsets.UTF_8);
+                // Replace in one step so a crash mid-write never leaves a truncated data.yml
+                try {
+                    Files.move(tempFile.toPath(), dataFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    // Some network and container file systems can't rename atomically, a plain replace still beats writing in place
+                    Files.move(tempFile.toPath(), dataFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                plugin.getLogger().severe("Could not save data.yml: " + e.getMessage());
+            }
         }
     }
 
-    public void storeVerification(UUID playerId, String discordId) {
+    public synchronized void storeVerification(UUID playerId, String discordId) {
+        String previous = getDiscordId(playerId);
+        if (previous != null) {
+            discordIndex.remove(previous, playerId);
+        }
         data.set("players." + playerId.toString() + ".discord_id", discordId);
+        data.set("players." + playerId.toString() + ".linked_at", System.currentTimeMillis());
+        discordIndex.put(discordId, playerId);
+        playerIndex.put(playerId, discordId);
+        saveData();
+    }
+
+    public synchronized String getSyncedNickname(UUID playerId) {
+        return data.getString("players." + playerId.toString() + ".nickname");
+    }
+
+    public synchronized void setSyncedNickname(UUID playerId, String nickname) {
+        // The player may have been unlinked while the update was in flight
+        if (!isVerified(playerId)) {
+            return;
+        }
+        data.set("players." + playerId.toString() + ".nickname", nickname);
+        saveData();
+    }
+
+    public synchronized String getLastKnownName(UUID playerId) {
+        return data.getString("players." + playerId.toString() + ".name");
+    }
+
+    public synchronized void setLastKnownName(UUID playerId, String name) {
+        if (!isVerified(playerId) || name.equals(getLastKnownName(playerId))) {
+            return;
+        }
+        data.set("players." + playerId.toString() + ".name", name);
         saveData();
     }
 
+    public synchronized long getLinkedAt(UUID playerId) {
+        return data.getLong("players." + playerId.toString() + ".linked_at", 0L);
+    }
+
+    /**
+     * Counts a /verify attempt. The totals are persisted with the next regular
+     * save or on shutdown rather than writing data.yml for every attempt.
+     */
+    public void recordVerifyAttempt(boolean success) {
+        (success ? verifySuccess : verifyFailure).incrementAndGet();
+    }
+
+    public long getVerifyAttempts(boolean success) {
+        return (success ? verifySuccess : verifyFailure).get();
+    }
+
+    public int getLinkCount() {
+        return discordIndex.size();
+    }
+
+    /**
+     * Opens a cursor over all stored links. The cursor walks the live index
+     * without copying it, so memory use doesn't grow with the number of links;
+     * links added or removed while it is open may or may not be seen.
+     */
+    public LinkCursor openCursor() {
+        return new LinkCursor(discordIndex.entrySet().iterator());
+    }
+
     public String getDiscordId(UUID playerId) {
-        return data.getString("players." + playerId.toString() + ".discord_id");
+        return playerIndex.get(playerId);
+    }
+
+    public UUID getPlayerId(String discordId) {
+        return discordIndex.get(discordId);
     }
 
     public boolean isVerified(UUID playerId) {
-        return data.contains("players." + playerId.toString() + ".discord_id");
+        return playerIndex.containsKey(playerId);
     }
 
-    public void removeVerification(UUID playerId) {
+    /**
+     * Returns a snapshot of every Discord ID that currently has a linked account.
+     */
+    public Set<String> getLinkedDiscordIds() {
+        return new HashSet<>(discordIndex.keySet());
+    }
+
+    public synchronized void removeVerification(UUID playerId) {
+        String discordId = getDiscordId(playerId);
+        if (discordId != null) {
+            discordIndex.remove(discordId, playerId);
+        }
+        playerIndex.remove(playerId);
         data.set("players." + playerId.toString(), null);
         saveData();
     }
@@ -61,26 +219,64 @@ public class StorageManager {
         if (discordId == null || discordId.isEmpty()) {
             return;
         }
-        
-        // Search through all players for this Discord ID
-        if (data.contains("players")) {
-            for (String uuidStr : data.getConfigurationSection("players").getKeys(false)) {
-                String storedDiscordId = data.getString("players." + uuidStr + ".discord_id");
-                if (discordId.equals(storedDiscordId)) {
-                    try {
-                        UUID playerId = UUID.fromString(uuidStr);
-                        
-                        // Remove the verification data
-                        removeVerification(playerId);
-                        
-                        plugin.getLogger().info("Unlinked Minecraft account with UUID " + 
-                                uuidStr + " because Discord user left the server");
-                        return;
-                    } catch (IllegalArgumentException e) {
-                        plugin.getLogger().warning("Invalid UUID stored in data: " + uuidStr);
-                    }
+
+        UUID playerId = discordIndex.get(discordId);
+        if (playerId != null) {
+            removeVerification(playerId);
+            plugin.getLogger().info("Unlinked Minecraft account with UUID " +
+                    playerId + " because Discord user left the server");
+        }
+    }
+
+    /**
+     * Unlinks every account belonging to the given Discord IDs and writes the
+     * data file once for the whole batch.
+     *
+     * @return the unlinked players mapped to the Discord ID they were linked to
+     */
+    public synchronized Map<UUID, String> unlinkDiscordIds(Collection<String> discordIds) {
+        Map<UUID, String> unlinked = new LinkedHashMap<>();
+        for (String discordId : discordIds) {
+            UUID playerId = discordIndex.remove(discordId);
+            if (playerId == null) {
+                continue;
+            }
+            playerIndex.remove(playerId, discordId);
+            data.set("players." + playerId.toString(), null);
+            unlinked.put(playerId, discordId);
+        }
+
+        if (!unlinked.isEmpty()) {
+            saveData();
+        }
+        return unlinked;
+    }
+
+    public record LinkRecord(UUID playerId, String discordId, long linkedAt) {}
+
+    public class LinkCursor {
+        private final Iterator<Map.Entry<String, UUID>> iterator;
+
+        private LinkCursor(Iterator<Map.Entry<String, UUID>> iterator) {
+            this.iterator = iterator;
+        }
+
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        /**
+         * Reads up to pageSize links, holding the storage lock only for the page itself.
+         */
+        public List<LinkRecord> nextPage(int pageSize) {
+            List<LinkRecord> page = new ArrayList<>(pageSize);
+            synchronized (StorageManager.this) {
+                while (page.size() < pageSize && iterator.hasNext()) {
+                    Map.Entry<String, UUID> entry = iterator.next();
+                    page.add(new LinkRecord(entry.getValue(), entry.getKey(), getLinkedAt(entry.getValue())));
                 }
             }
+            return page;
         }
     }
-} 
\ No newline at end of file
+}
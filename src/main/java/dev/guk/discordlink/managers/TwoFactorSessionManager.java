@@ -0,0 +1,197 @@
+package dev.guk.discordlink.managers;
+
+import java.net.InetSocketAddress;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bukkit.entity.Player;
+
+import dev.guk.discordlink.DiscordLink;
+
+/**
+ * Issues and redeems 2FA codes, and remembers players who completed 2FA so
+ * that quick reconnects from the same IP address can skip sending a new code
+ * over Discord. A session lasts for the configured ttl after the 2FA was
+ * actually completed, reconnecting on a trusted session does not extend it.
+ */
+public class TwoFactorSessionManager {
+    private final DiscordLink plugin;
+    private final Map<UUID, TrustedSession> sessions;
+    private final Map<UUID, String> onlineAddresses;
+    // Online players who skipped 2FA, with the completion time of the session they used
+    private final Map<UUID, Long> trustedOnline;
+    private final Map<UUID, PendingCode> pendingCodes;
+    // Online players who entered their code this login
+    private final Set<UUID> completed;
+    private final SecureRandom random;
+    private long lastPurge;
+
+    public TwoFactorSessionManager(DiscordLink plugin) {
+        this.plugin = plugin;
+        this.sessions = new ConcurrentHashMap<>();
+        this.onlineAddresses = new ConcurrentHashMap<>();
+        this.trustedOnline = new ConcurrentHashMap<>();
+        this.pendingCodes = new ConcurrentHashMap<>();
+        this.completed = ConcurrentHashMap.newKeySet();
+        this.random = new SecureRandom();
+    }
+
+    public enum RedeemResult {
+        SUCCESS,
+        INVALID,
+        EXPIRED,
+        NO_CODE
+    }
+
+    private boolean isEnabled() {
+        return plugin.getConfig().getBoolean("two_factor_auth.trusted_sessions.enabled", true);
+    }
+
+    /**
+     * Records the player's address and checks it against their trusted session.
+     *
+     * @return true if the player may skip 2FA for this login
+     */
+    public boolean handleJoin(Player player) {
+        UUID playerId = player.getUniqueId();
+        String address = getAddress(player);
+        if (address != null) {
+            onlineAddresses.put(playerId, address);
+        }
+
+        if (!isEnabled() || address == null) {
+            return false;
+        }
+
+        TrustedSession session = sessions.get(playerId);
+        if (session == null) {
+            return false;
+        }
+        if (session.expiresAt() < System.currentTimeMillis() || !session.address().equals(address)) {
+            sessions.remove(playerId);
+            return false;
+        }
+
+        trustedOnline.put(playerId, session.completedAt());
+        return true;
+    }
+
+    /**
+     * Saves a trusted session for a player who is leaving after completing
+     * 2FA, or re-saves the one they joined on with its original completion
+     * time. Must be called before the 2FA state is cleared.
+     */
+    public void handleQuit(UUID playerId, boolean completedTwoFactor) {
+        String address = onlineAddresses.remove(playerId);
+        Long trustedSince = trustedOnline.remove(playerId);
+
+        long now = System.currentTimeMillis();
+        if (now - lastPurge > 60_000L) {
+            lastPurge = now;
+            purgeExpired();
+        }
+
+        if (!isEnabled() || address == null || !(completedTwoFactor || trustedSince != null)) {
+            return;
+        }
+
+        long completedAt = completedTwoFactor ? now : trustedSince;
+        long ttl = plugin.getConfig().getLong("two_factor_auth.trusted_sessions.ttl", 600);
+        long expiresAt = completedAt + ttl * 1000L;
+        if (expiresAt < now) {
+            sessions.remove(playerId);
+            return;
+        }
+        sessions.put(playerId, new TrustedSession(address, completedAt, expiresAt));
+    }
+
+    public boolean hasTrustedSession(UUID playerId) {
+        return trustedOnline.containsKey(playerId);
+    }
+
+    /**
+     * Creates a new numeric 2FA code for the player, replacing any earlier one.
+     */
+    public String issueCode(UUID playerId) {
+        int length = Math.max(4, Math.min(9, plugin.getConfig().getInt("two_factor_auth.code_length", 6)));
+        StringBuilder code = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            code.append(random.nextInt(10));
+        }
+        long expiry = plugin.getConfig().getLong("two_factor_auth.expiry_time", 120);
+        completed.remove(playerId);
+        pendingCodes.put(playerId, new PendingCode(code.toString(), System.currentTimeMillis() + expiry * 1000L, 0));
+        return code.toString();
+    }
+
+    /**
+     * Checks a code entered in game. A code is dropped once it expired or was
+     * guessed wrong max_attempts times, the player then needs to rejoin.
+     */
+    public RedeemResult redeemCode(UUID playerId, String code) {
+        PendingCode pending = pendingCodes.get(playerId);
+        if (pending == null) {
+            return RedeemResult.NO_CODE;
+        }
+        if (pending.expiresAt() < System.currentTimeMillis()) {
+            pendingCodes.remove(playerId);
+            return RedeemResult.EXPIRED;
+        }
+        if (!pending.code().equals(code)) {
+            int maxAttempts = plugin.getConfig().getInt("two_factor_auth.max_attempts", 5);
+            if (pending.attempts() + 1 >= maxAttempts) {
+                pendingCodes.remove(playerId);
+            } else {
+                pendingCodes.put(playerId, new PendingCode(pending.code(), pending.expiresAt(), pending.attempts() + 1));
+            }
+            return RedeemResult.INVALID;
+        }
+        pendingCodes.remove(playerId);
+        completed.add(playerId);
+        return RedeemResult.SUCCESS;
+    }
+
+    /**
+     * Whether the player entered their code this login.
+     */
+    public boolean hasCompleted(UUID playerId) {
+        return completed.contains(playerId);
+    }
+
+    /**
+     * Forgets the player's code and completion once they left, after handleQuit.
+     */
+    public void removePlayer(UUID playerId) {
+        pendingCodes.remove(playerId);
+        completed.remove(playerId);
+    }
+
+    public void revoke(UUID playerId) {
+        sessions.remove(playerId);
+        trustedOnline.remove(playerId);
+        removePlayer(playerId);
+    }
+
+    /**
+     * Drops expired sessions so the map doesn't grow with players who never return.
+     */
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        sessions.values().removeIf(session -> session.expiresAt() < now);
+    }
+
+    private String getAddress(Player player) {
+        InetSocketAddress address = player.getAddress();
+        if (address == null || address.getAddress() == null) {
+            return null;
+        }
+        return address.getAddress().getHostAddress();
+    }
+
+    private record TrustedSession(String address, long completedAt, long expiresAt) {}
+
+    private record PendingCode(String code, long expiresAt, int attempts) {}
+}
@@ -3,82 +3,211 @@ package dev.guk.discordlink.managers;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 
 import dev.guk.discordlink.DiscordLink;
+import dev.guk.discordlink.api.UnlinkEvent;
+import dev.guk.discordlink.tasks.TimingWheel;
+import dev.guk.discordlink.utils.ColorUtils;
 
 public class VerificationManager {
     private final DiscordLink plugin;
     private final Map<UUID, String> pendingCodes;
+    // Reverse of pendingCodes, so a code is only ever handed to one player and redeeming it is a lookup
+    private final Map<String, UUID> codeIndex;
     private final Map<UUID, Long> cooldowns;
     private final Map<UUID, Long> codeExpiry;
+    private final Map<UUID, TimingWheel.Timeout> expiryNotices;
+    private final Map<UUID, TimingWheel.Timeout> freezeReminders;
 
     public VerificationManager(DiscordLink plugin) {
         this.plugin = plugin;
-        this.pendingCodes = new HashMap<>();
-        this.cooldowns = new HashMap<>();
-        this.codeExpiry = new HashMap<>();
+        // Codes are redeemed from JDA threads and issued from async pre-login threads when the join gate is on
+        this.pendingCodes = new ConcurrentHashMap<>();
+        this.codeIndex = new ConcurrentHashMap<>();
+        this.cooldowns = new ConcurrentHashMap<>();
+        this.codeExpiry = new ConcurrentHashMap<>();
+        this.expiryNotices = new ConcurrentHashMap<>();
+        this.freezeReminders = new HashMap<>();
     }
 
     public String generateCode(UUID playerId) {
-        // Generate a random code
-        String code;
-        if (plugin.getConfig().getString("verification.code.format", "ALPHANUMERIC").equalsIgnoreCase("NUMERIC")) {
-            code = String.format("%06d", (int) (Math.random() * 1000000));
-        } else {
-            String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
-            StringBuilder sb = new StringBuilder();
-            int length = plugin.getConfig().getInt("verification.code.length", 6);
-            for (int i = 0; i < length; i++) {
-                sb.append(chars.charAt((int) (Math.random() * chars.length())));
-            }
-            code = sb.toString();
+        String code = createCode(playerId);
+        // Only /verify is rate limited, the join gate hands back a still valid code, so gate
+        // attempts, bots included, leave no cooldown entry behind
+        long now = System.currentTimeMillis();
+        cooldowns.values().removeIf(until -> until <= now);
+        int cooldown = plugin.getConfig().getInt("verification.cooldown", 60);
+        cooldowns.put(playerId, now + (cooldown * 1000L));
+        scheduleExpiryNotice(playerId, code, plugin.getConfig().getInt("verification.code.expiry", 300));
+        return code;
+    }
+
+    /**
+     * Returns the player's pending code if it is still valid, otherwise creates a
+     * new one. Used by the join gate from async pre-login threads, so a player who
+     * reconnects keeps the code they may already be typing into Discord.
+     */
+    public String getOrCreateGateCode(UUID playerId) {
+        String code = pendingCodes.get(playerId);
+        Long expiry = codeExpiry.get(playerId);
+        if (code != null && expiry != null && expiry > System.currentTimeMillis()) {
+            return code;
         }
 
-        // Store the code with expiry time
-        pendingCodes.put(playerId, code);
+        String created = createCode(playerId);
+        // The timing wheel is main-thread only, the notice also clears the code if it's never used
         int expiryTime = plugin.getConfig().getInt("verification.code.expiry", 300);
-        codeExpiry.put(playerId, System.currentTimeMillis() + (expiryTime * 1000L));
+        plugin.getAsyncExecutor().runOnMain(() -> {
+            if (created.equals(pendingCodes.get(playerId))) {
+                scheduleExpiryNotice(playerId, created, expiryTime);
+            }
+        });
+        return created;
+    }
 
-        // Set cooldown
-        int cooldown = plugin.getConfig().getInt("verification.cooldown", 60);
-        cooldowns.put(playerId, System.currentTimeMillis() + (cooldown * 1000L));
+    private String createCode(UUID playerId) {
+        // Generate random codes until one isn't held by another player
+        String code;
+        int attempts = 0;
+        do {
+            if (++attempts > 100) {
+                throw new IllegalStateException("No free verification code left, raise verification.code.length");
+            }
+            code = randomCode();
+        } while (codeIndex.putIfAbsent(code, playerId) != null);
+
+        // Store the code with expiry time, replacing the player's previous one
+        String previous = pendingCodes.put(playerId, code);
+        if (previous != null) {
+            codeIndex.remove(previous, playerId);
+        }
+        int expiryTime = plugin.getConfig().getInt("verification.code.expiry", 300);
+        long expiresAt = System.currentTimeMillis() + (expiryTime * 1000L);
+        codeExpiry.put(playerId, expiresAt);
+        // On a shared gateway follower the code is redeemed through the leader's bot
+        plugin.getSharedGateway().registerCode(playerId, code, expiresAt);
 
         return code;
     }
 
+    private String randomCode() {
+        if (plugin.getConfig().getString("verification.code.format", "ALPHANUMERIC").equalsIgnoreCase("NUMERIC")) {
+            return String.format("%06d", (int) (Math.random() * 1000000));
+        }
+        String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+        StringBuilder sb = new StringBuilder();
+        int length = plugin.getConfig().getInt("verification.code.length", 6);
+        for (int i = 0; i < length; i++) {
+            sb.append(chars.charAt((int) (Math.random() * chars.length())));
+        }
+        return sb.toString();
+    }
+
+    private void removeCode(UUID playerId) {
+        String code = pendingCodes.remove(playerId);
+        codeExpiry.remove(playerId);
+        if (code != null) {
+            codeIndex.remove(code, playerId);
+        }
+    }
+
+    private void scheduleExpiryNotice(UUID playerId, String code, int expiryTime) {
+        TimingWheel.Timeout previous = expiryNotices.remove(playerId);
+        if (previous != null) {
+            previous.cancel();
+        }
+
+        expiryNotices.put(playerId, plugin.getTimingWheel().schedule(playerId, expiryTime * 20L, () -> {
+            expiryNotices.remove(playerId);
+            // Only expire the code this notice was scheduled for, a newer one may have replaced it
+            if (!code.equals(pendingCodes.get(playerId))) {
+                return;
+            }
+            removeCode(playerId);
+
+            Player player = Bukkit.getPlayer(playerId);
+            if (player != null && player.isOnline()) {
+                String message = plugin.getConfig().getString("messages.minecraft.code-expired",
+                        "&c⏳ Your verification code has expired.\n&7Use &f/verify &7to get a new one.");
+                player.sendMessage(ColorUtils.translate(plugin.getConfig().getString("settings.prefix", "") + message));
+            }
+        }));
+    }
+
     public String verifyCodeAndGetUUID(String discordId, String code) {
-        // Find the player with this code
-        for (Map.Entry<UUID, String> entry : pendingCodes.entrySet()) {
-            if (entry.getValue().equals(code)) {
-                UUID playerId = entry.getKey();
-                
-                // Check if code has expired
-                Long expiry = codeExpiry.get(playerId);
-                if (expiry == null || expiry < System.currentTimeMillis()) {
-                    pendingCodes.remove(playerId);
+        UUID playerId = code != null ? codeIndex.get(code) : null;
+        // Removing the index entry claims the code, two users racing on it can't both link
+        if (playerId != null && codeIndex.remove(code, playerId)) {
+            Long expiry = codeExpiry.get(playerId);
+            if (expiry == null || expiry < System.currentTimeMillis()) {
+                if (pendingCodes.remove(playerId, code)) {
                     codeExpiry.remove(playerId);
-                    return null;
                 }
+                plugin.getStorageManager().recordVerifyAttempt(false);
+                plugin.getAuditManager().record(AuditManager.Action.VERIFY_FAILED, playerId, discordId);
+                return null;
+            }
 
-                // Store the link
-                plugin.getStorageManager().storeVerification(playerId, discordId);
+            completeLink(playerId, discordId);
+            return playerId.toString();
+        }
+        plugin.getStorageManager().recordVerifyAttempt(false);
+        plugin.getAuditManager().record(AuditManager.Action.VERIFY_FAILED, null, discordId);
+        return null;
+    }
 
-                // Unfreeze the player if they're online
-                Player player = Bukkit.getPlayer(playerId);
-                if (player != null && player.isOnline()) {
-                    plugin.getVerificationFreezeManager().unfreezePlayer(player);
-                }
+    /**
+     * Stores a link for a code issued here but redeemed through the shared
+     * gateway leader's bot. Called from the gateway reader thread.
+     */
+    public void completeRemoteLink(UUID playerId, String discordId) {
+        completeLink(playerId, discordId);
+        // The leader can't see our players, so nickname sync starts here
+        plugin.getAsyncExecutor().runOnMain(() -> {
+            Player player = Bukkit.getPlayer(playerId);
+            if (player != null) {
+                plugin.getNicknameSyncManager().requestSync(playerId, player.getName());
+            }
+        });
+    }
 
-                // Clean up
-                pendingCodes.remove(playerId);
-                codeExpiry.remove(playerId);
+    private void completeLink(UUID playerId, String discordId) {
+        // Store the link
+        plugin.getStorageManager().storeVerification(playerId, discordId);
+        plugin.getStorageManager().recordVerifyAttempt(true);
+        plugin.getAuditManager().record(AuditManager.Action.LINK, playerId, discordId);
+        plugin.getLinkApi().publishLink(playerId, discordId);
 
-                return playerId.toString();
+        // Unfreeze the player if they're online, this is called from JDA threads
+        plugin.getAsyncExecutor().runOnMain(() -> {
+            Player player = Bukkit.getPlayer(playerId);
+            if (player != null && player.isOnline()) {
+                plugin.getVerificationFreezeManager().unfreezePlayer(player);
+                plugin.getRoleSyncManager().requestSync(player, false);
             }
+        });
+
+        // Clean up
+        removeCode(playerId);
+        TimingWheel.Timeout notice = expiryNotices.remove(playerId);
+        if (notice != null) {
+            plugin.getAsyncExecutor().runOnMain(notice::cancel);
         }
-        return null;
+    }
+
+    /**
+     * Returns a snapshot of every code waiting to be redeemed, by player.
+     */
+    public Map<UUID, String> getPendingCodes() {
+        return new HashMap<>(pendingCodes);
+    }
+
+    public long getCodeExpiry(UUID playerId) {
+        Long expiry = codeExpiry.get(playerId);
+        return expiry != null ? expiry : 0L;
     }
 
     public boolean isVerified(UUID playerId) {
@@ -86,20 +215,74 @@ public class VerificationManager {
     }
 
     public void unlink(UUID playerId) {
+        String discordId = plugin.getStorageManager().getDiscordId(playerId);
         plugin.getStorageManager().removeVerification(playerId);
-        
+        plugin.getAuditManager().record(AuditManager.Action.UNLINK, playerId, discordId);
+        if (discordId != null) {
+            plugin.getLinkApi().publishUnlink(playerId, discordId, UnlinkEvent.Reason.UNLINKED);
+        }
+        plugin.getTwoFactorSessionManager().revoke(playerId);
+        plugin.getRoleSyncManager().requestClear(discordId);
+        refreezeIfRequired(playerId);
+    }
+
+    public void refreezeIfRequired(UUID playerId) {
         // If player is online, they might need to be frozen again
         Player player = Bukkit.getPlayer(playerId);
         if (player != null && player.isOnline() && 
             plugin.getConfig().getBoolean("verification.freeze.enabled", false) &&
             !player.hasPermission(plugin.getConfig().getString("verification.freeze.bypass_permission", "discordlink.bypass.freeze"))) {
             plugin.getVerificationFreezeManager().freezePlayer(player);
+            scheduleFreezeReminder(player);
+        }
+    }
+
+    /**
+     * Registers a repeating reminder for a frozen player on the shared timing wheel.
+     * The reminder removes itself once the player is no longer frozen. Off unless
+     * verification.freeze.wheel_reminders is set, VerificationFreezeManager sends
+     * its own reminders and both together would repeat every message.
+     */
+    public void scheduleFreezeReminder(Player player) {
+        if (!plugin.getConfig().getBoolean("verification.freeze.wheel_reminders", false)) {
+            return;
         }
+        UUID playerId = player.getUniqueId();
+        int interval = plugin.getConfig().getInt("verification.freeze.reminder_interval", 30);
+        if (interval <= 0 || freezeReminders.containsKey(playerId)) {
+            return;
+        }
+
+        freezeReminders.put(playerId, plugin.getTimingWheel().scheduleRepeating(playerId, interval * 20L, interval * 20L, () -> {
+            if (!player.isOnline() || !plugin.getVerificationFreezeManager().isFrozen(playerId)) {
+                TimingWheel.Timeout reminder = freezeReminders.remove(playerId);
+                if (reminder != null) {
+                    reminder.cancel();
+                }
+                return;
+            }
+            String message = plugin.getConfig().getString("messages.minecraft.verification-frozen",
+                    "&e⚠ You need to verify your Discord account to play.\n&7Use &f/verify &7to get started.");
+            player.sendMessage(ColorUtils.translate(plugin.getConfig().getString("settings.prefix", "") + message));
+        }));
+    }
+
+    /**
+     * Forgets timer handles for a player who left, the timing wheel cancels the tasks themselves.
+     */
+    public void removePlayer(UUID playerId) {
+        expiryNotices.remove(playerId);
+        freezeReminders.remove(playerId);
     }
 
     public boolean isOnCooldown(UUID playerId) {
         Long cooldown = cooldowns.get(playerId);
-        return cooldown != null && cooldown > System.currentTimeMillis();
+        if (cooldown != null && cooldown <= System.currentTimeMillis()) {
+            // Expired entries go as soon as they are seen
+            cooldowns.remove(playerId, cooldown);
+            return false;
+        }
+        return cooldown != null;
     }
 
     public int getRemainingCooldown(UUID playerId) {
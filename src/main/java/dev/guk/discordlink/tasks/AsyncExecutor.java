@@ -0,0 +1,154 @@
+package dev.guk.discordlink.tasks;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bukkit.scheduler.BukkitTask;
+
+import dev.guk.discordlink.DiscordLink;
+
+/**
+ * Plugin-wide async execution layer. Blocking storage and Discord work runs
+ * on virtual threads and hands back a {@link CompletableFuture}; callbacks
+ * that need the Bukkit API are queued and run together on the main thread
+ * once per tick.
+ */
+public class AsyncExecutor {
+    private final DiscordLink plugin;
+    private final ExecutorService executor;
+    private final ConcurrentLinkedQueue<Runnable> mainQueue;
+    private final AtomicInteger inFlight;
+    private final Executor mainExecutor;
+    private BukkitTask task;
+
+    public AsyncExecutor(DiscordLink plugin) {
+        this.plugin = plugin;
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("DiscordLink-IO-", 0).factory());
+        this.mainQueue = new ConcurrentLinkedQueue<>();
+        this.inFlight = new AtomicInteger();
+        this.mainExecutor = mainQueue::offer;
+    }
+
+    public void start() {
+        this.task = plugin.getServer().getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+    }
+
+    /**
+     * Stops accepting work, waits for in-flight tasks to finish and runs any
+     * main-thread callbacks they produced. Called from onDisable on the main thread.
+     */
+    public void shutdown() {
+        if (this.task != null) {
+            this.task.cancel();
+            this.task = null;
+        }
+
+        executor.shutdown();
+        long timeout = plugin.getConfig().getLong("settings.async.shutdown_timeout", 10);
+        try {
+            if (!executor.awaitTermination(timeout, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("Timed out waiting for " + inFlight.get() + " async task(s) to finish");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        drainMainQueue();
+    }
+
+    /**
+     * Runs a blocking call on a virtual thread.
+     */
+    public <T> CompletableFuture<T> supply(Callable<T> callable) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        inFlight.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(callable.call());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.decrementAndGet();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Runs a blocking call with no result on a virtual thread.
+     */
+    public CompletableFuture<Void> run(Runnable runnable) {
+        return supply(() -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    /**
+     * Returns a future that completes on the main thread once the given one does.
+     */
+    public <T> CompletableFuture<T> onMain(CompletableFuture<T> future) {
+        return future.whenCompleteAsync((result, error) -> {}, mainExecutor);
+    }
+
+    /**
+     * Queues a task for the next main-thread batch.
+     */
+    public void runOnMain(Runnable runnable) {
+        mainQueue.offer(runnable);
+    }
+
+    /**
+     * Executor that runs callbacks in the next main-thread batch,
+     * for use with {@code thenAcceptAsync} and friends.
+     */
+    public Executor main() {
+        return mainExecutor;
+    }
+
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    public int getPendingMainCount() {
+        return mainQueue.size();
+    }
+
+    private void tick() {
+        TickProfiler profiler = plugin.getTickProfiler();
+        profiler.enter();
+        try {
+            drainMainQueue();
+        } finally {
+            profiler.exit(TickProfiler.Section.MAIN_QUEUE);
+        }
+    }
+
+    private void drainMainQueue() {
+        // Only run what was queued before this tick started, callbacks may enqueue more
+        int count = mainQueue.size();
+        Runnable runnable;
+        while (count-- > 0 && (runnable = mainQueue.poll()) != null) {
+            try {
+                runnable.run();
+            } catch (Exception e) {
+                plugin.getLogger().severe("Error in main-thread callback: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -28,11 +28,17 @@ public class BroadcastTask {
         }
 
         this.task = plugin.getServer().getScheduler().runTaskTimer(plugin, () -> {
-            String message = messages.get(random.nextInt(messages.size()));
-            for (Player player : plugin.getServer().getOnlinePlayers()) {
-                if (!plugin.getVerificationManager().isVerified(player.getUniqueId())) {
-                    player.sendMessage(plugin.getConfig().getString("messages.prefix") + message);
+            TickProfiler profiler = plugin.getTickProfiler();
+            profiler.enter();
+            try {
+                String message = messages.get(random.nextInt(messages.size()));
+                for (Player player : plugin.getServer().getOnlinePlayers()) {
+                    if (!plugin.getVerificationManager().isVerified(player.getUniqueId())) {
+                        player.sendMessage(plugin.getConfig().getString("messages.prefix") + message);
+                    }
                 }
+            } finally {
+                profiler.exit(TickProfiler.Section.BROADCAST);
             }
         }, interval * 20L, interval * 20L);
     }
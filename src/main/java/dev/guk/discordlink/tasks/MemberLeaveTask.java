@@ -0,0 +1,108 @@
+package dev.guk.discordlink.tasks;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.bukkit.scheduler.BukkitTask;
+
+import dev.guk.discordlink.DiscordLink;
+import dev.guk.discordlink.api.UnlinkEvent;
+import dev.guk.discordlink.managers.AuditManager;
+
+/**
+ * Drains Discord member-leave events in batches off the main thread.
+ * Each batch costs one index lookup per ID and a single data file write,
+ * after which affected online players are re-frozen on the main thread.
+ */
+public class MemberLeaveTask {
+    private final DiscordLink plugin;
+    private final ConcurrentLinkedQueue<String> queue;
+    private BukkitTask task;
+
+    public MemberLeaveTask(DiscordLink plugin) {
+        this.plugin = plugin;
+        this.queue = new ConcurrentLinkedQueue<>();
+    }
+
+    public void start() {
+        long interval = Math.max(1, plugin.getConfig().getInt("discord.leave_sync.interval", 5)) * 20L;
+        this.task = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, this::drain, interval, interval);
+    }
+
+    public void stop() {
+        if (this.task != null) {
+            this.task.cancel();
+            this.task = null;
+        }
+
+        // Commit whatever is still queued so leaves aren't lost on shutdown
+        Set<String> remaining = new LinkedHashSet<>();
+        String discordId;
+        while ((discordId = queue.poll()) != null) {
+            remaining.add(discordId);
+        }
+        if (!remaining.isEmpty()) {
+            Map<UUID, String> unlinked = plugin.getStorageManager().unlinkDiscordIds(remaining);
+            for (Map.Entry<UUID, String> entry : unlinked.entrySet()) {
+                plugin.getAuditManager().record(AuditManager.Action.DISCORD_LEAVE, entry.getKey(), entry.getValue());
+                plugin.getLinkApi().publishUnlink(entry.getKey(), entry.getValue(), UnlinkEvent.Reason.DISCORD_LEAVE);
+            }
+        }
+    }
+
+    public void enqueue(String discordId) {
+        if (discordId != null && !discordId.isEmpty()) {
+            queue.offer(discordId);
+        }
+    }
+
+    public void enqueueAll(Collection<String> discordIds) {
+        for (String discordId : discordIds) {
+            enqueue(discordId);
+        }
+    }
+
+    private void drain() {
+        int batchSize = Math.max(1, plugin.getConfig().getInt("discord.leave_sync.batch_size", 500));
+
+        while (!queue.isEmpty()) {
+            // Deduplicate within the batch, raids often produce repeated events
+            Set<String> batch = new LinkedHashSet<>();
+            String discordId;
+            while (batch.size() < batchSize && (discordId = queue.poll()) != null) {
+                batch.add(discordId);
+            }
+
+            Map<UUID, String> unlinked = plugin.getStorageManager().unlinkDiscordIds(batch);
+            if (unlinked.isEmpty()) {
+                continue;
+            }
+
+            plugin.getLogger().info("Unlinked " + unlinked.size() + " Minecraft account(s) because their Discord users left the server");
+            if (plugin.getConfig().getBoolean("settings.debug", false)) {
+                plugin.getLogger().info("Unlinked UUIDs: " + unlinked.keySet());
+            }
+            for (Map.Entry<UUID, String> entry : unlinked.entrySet()) {
+                plugin.getAuditManager().record(AuditManager.Action.DISCORD_LEAVE, entry.getKey(), entry.getValue());
+                plugin.getLinkApi().publishUnlink(entry.getKey(), entry.getValue(), UnlinkEvent.Reason.DISCORD_LEAVE);
+            }
+
+            List<UUID> affected = new ArrayList<>(unlinked.keySet());
+            plugin.getAsyncExecutor().runOnMain(() -> {
+                for (UUID playerId : affected) {
+                    plugin.getTwoFactorSessionManager().revoke(playerId);
+                    if (plugin.getConfig().getBoolean("two_factor_auth.enabled", false)) {
+                        plugin.getTwoFactorManager().removePlayer(playerId);
+                    }
+                    plugin.getVerificationManager().refreezeIfRequired(playerId);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package dev.guk.discordlink.tasks;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.bukkit.scheduler.BukkitTask;
+
+import dev.guk.discordlink.DiscordLink;
+
+/**
+ * Measures how much main-thread time and memory the plugin's own event
+ * handlers and tasks cost per server tick, and warns when a tick goes over
+ * the configured budget. Sections are timed with enter/exit pairs on the
+ * main thread; nested sections are counted once, by the outermost pair.
+ *
+ * When disabled, enter and exit only read a boolean.
+ */
+public class TickProfiler {
+    public enum Section {
+        JOIN,
+        QUIT,
+        MOVE,
+        COMMAND,
+        INTERACT,
+        DROP_ITEM,
+        BROADCAST,
+        TIMING_WHEEL,
+        MAIN_QUEUE
+    }
+
+    private final DiscordLink plugin;
+    private final com.sun.management.ThreadMXBean threads;
+    private final Map<Section, SectionStats> sections;
+    private boolean enabled;
+    private long budgetNanos;
+    private long allocationBudgetBytes;
+    private long warnIntervalMillis;
+    private BukkitTask task;
+
+    private int depth;
+    private long enteredAt;
+    private long enteredBytes;
+
+    private long tickNanos;
+    private long tickBytes;
+    private long ticks;
+    private long activeTicks;
+    private long totalTickNanos;
+    private long worstTickNanos;
+    private long worstTickBytes;
+    private long ticksOverBudget;
+    private long lastWarning;
+
+    public TickProfiler(DiscordLink plugin) {
+        this.plugin = plugin;
+        // Allocation counters are a HotSpot extension, fall back to time only elsewhere
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        this.threads = bean instanceof com.sun.management.ThreadMXBean sun && sun.isThreadAllocatedMemorySupported()
+                ? sun : null;
+        this.sections = new EnumMap<>(Section.class);
+        for (Section section : Section.values()) {
+            sections.put(section, new SectionStats());
+        }
+    }
+
+    public void start() {
+        this.enabled = plugin.getConfig().getBoolean("settings.timings.enabled", false);
+        if (!enabled) {
+            return;
+        }
+        this.budgetNanos = Math.max(1, plugin.getConfig().getLong("settings.timings.tick_budget_micros", 1000)) * 1000L;
+        this.allocationBudgetBytes = Math.max(1, plugin.getConfig().getLong("settings.timings.allocation_budget_kb", 256)) * 1024L;
+        this.warnIntervalMillis = Math.max(0, plugin.getConfig().getLong("settings.timings.warn_interval", 60)) * 1000L;
+        if (threads != null && !threads.isThreadAllocatedMemoryEnabled()) {
+            threads.setThreadAllocatedMemoryEnabled(true);
+        }
+        this.task = plugin.getServer().getScheduler().runTaskTimer(plugin, this::endTick, 1L, 1L);
+    }
+
+    public void stop() {
+        this.enabled = false;
+        if (this.task != null) {
+            this.task.cancel();
+            this.task = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isMeasuringAllocations() {
+        return threads != null;
+    }
+
+    /**
+     * Starts timing a section. Must be paired with {@link #exit(Section)} in a finally block.
+     */
+    public void enter() {
+        if (!enabled || depth++ > 0) {
+            return;
+        }
+        enteredBytes = threads != null ? threads.getCurrentThreadAllocatedBytes() : 0L;
+        enteredAt = System.nanoTime();
+    }
+
+    public void exit(Section section) {
+        if (!enabled || depth == 0 || --depth > 0) {
+            return;
+        }
+        long nanos = System.nanoTime() - enteredAt;
+        long bytes = threads != null ? threads.getCurrentThreadAllocatedBytes() - enteredBytes : 0L;
+
+        SectionStats stats = sections.get(section);
+        stats.calls++;
+        stats.totalNanos += nanos;
+        stats.totalBytes += bytes;
+        if (nanos > stats.maxNanos) {
+            stats.maxNanos = nanos;
+        }
+        tickNanos += nanos;
+        tickBytes += bytes;
+    }
+
+    /**
+     * Closes the current tick window. Runs once per tick on the main thread.
+     */
+    private void endTick() {
+        ticks++;
+        if (tickNanos == 0L && tickBytes == 0L) {
+            return;
+        }
+        activeTicks++;
+        totalTickNanos += tickNanos;
+        worstTickNanos = Math.max(worstTickNanos, tickNanos);
+        worstTickBytes = Math.max(worstTickBytes, tickBytes);
+
+        if (tickNanos > budgetNanos || tickBytes > allocationBudgetBytes) {
+            ticksOverBudget++;
+            long now = System.currentTimeMillis();
+            if (now - lastWarning >= warnIntervalMillis) {
+                lastWarning = now;
+                plugin.getLogger().warning("DiscordLink used " + tickNanos / 1000L + "µs and " + tickBytes / 1024L
+                        + "KB of allocations in one tick (budget " + budgetNanos / 1000L + "µs / "
+                        + allocationBudgetBytes / 1024L + "KB), see /discordlink timings");
+            }
+        }
+        tickNanos = 0L;
+        tickBytes = 0L;
+    }
+
+    public void reset() {
+        for (SectionStats stats : sections.values()) {
+            stats.calls = 0L;
+            stats.totalNanos = 0L;
+            stats.totalBytes = 0L;
+            stats.maxNanos = 0L;
+        }
+        ticks = 0L;
+        activeTicks = 0L;
+        totalTickNanos = 0L;
+        worstTickNanos = 0L;
+        worstTickBytes = 0L;
+        ticksOverBudget = 0L;
+    }
+
+    public SectionSnapshot getSection(Section section) {
+        SectionStats stats = sections.get(section);
+        return new SectionSnapshot(stats.calls,
+                stats.calls == 0 ? 0L : stats.totalNanos / stats.calls,
+                stats.maxNanos,
+                stats.calls == 0 ? 0L : stats.totalBytes / stats.calls);
+    }
+
+    public TickSnapshot getTicks() {
+        return new TickSnapshot(ticks, activeTicks,
+                ticks == 0 ? 0L : totalTickNanos / ticks,
+                worstTickNanos, worstTickBytes, ticksOverBudget, budgetNanos, allocationBudgetBytes);
+    }
+
+    public record SectionSnapshot(long calls, long averageNanos, long maxNanos, long averageBytes) {}
+
+    public record TickSnapshot(long ticks, long activeTicks, long averageNanos, long worstNanos, long worstBytes,
+                               long overBudget, long budgetNanos, long allocationBudgetBytes) {}
+
+    private static class SectionStats {
+        private long calls;
+        private long totalNanos;
+        private long totalBytes;
+        private long maxNanos;
+    }
+}
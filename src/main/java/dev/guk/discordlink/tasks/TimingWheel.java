@@ -0,0 +1,229 @@
+package dev.guk.discordlink.tasks;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.bukkit.scheduler.BukkitTask;
+
+import dev.guk.discordlink.DiscordLink;
+
+/**
+ * Plugin-wide hashed timing wheel driven by a single main-thread task.
+ * All per-player timed work (freeze reminders, 2FA expiry, code expiry
+ * notices) registers here instead of owning its own Bukkit task.
+ *
+ * Each tick only the slot under the cursor is visited, and due entries
+ * run within a per-tick time budget; anything left over carries into the
+ * next tick. Scheduling and cancelling must happen on the main thread.
+ */
+public class TimingWheel {
+    private final DiscordLink plugin;
+    private final Timeout[] slots;
+    private final int mask;
+    private final ArrayDeque<Timeout> due;
+    private final Map<UUID, Set<Timeout>> byOwner;
+    private long tick;
+    private BukkitTask task;
+
+    public TimingWheel(DiscordLink plugin) {
+        this.plugin = plugin;
+        // Round up to a power of two so the slot index is a mask instead of a modulo
+        int size = Integer.highestOneBit(Math.max(64, plugin.getConfig().getInt("settings.scheduler.wheel_size", 512)) - 1) << 1;
+        this.slots = new Timeout[size];
+        this.mask = size - 1;
+        this.due = new ArrayDeque<>();
+        this.byOwner = new HashMap<>();
+    }
+
+    public void start() {
+        this.task = plugin.getServer().getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+    }
+
+    public void stop() {
+        if (this.task != null) {
+            this.task.cancel();
+            this.task = null;
+        }
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = null;
+        }
+        due.clear();
+        byOwner.clear();
+    }
+
+    /**
+     * Runs the task once after the given delay.
+     */
+    public Timeout schedule(UUID owner, long delayTicks, Runnable action) {
+        return schedule(owner, delayTicks, 0L, action);
+    }
+
+    /**
+     * Runs the task after the given delay and then every period ticks until cancelled.
+     */
+    public Timeout scheduleRepeating(UUID owner, long delayTicks, long periodTicks, Runnable action) {
+        return schedule(owner, delayTicks, Math.max(1L, periodTicks), action);
+    }
+
+    private Timeout schedule(UUID owner, long delayTicks, long periodTicks, Runnable action) {
+        Timeout timeout = new Timeout(owner, periodTicks, action);
+        insert(timeout, Math.max(1L, delayTicks));
+        if (owner != null) {
+            byOwner.computeIfAbsent(owner, key -> new HashSet<>()).add(timeout);
+        }
+        return timeout;
+    }
+
+    /**
+     * Cancels every task registered for the given owner, used when a player quits.
+     */
+    public void cancelAll(UUID owner) {
+        Set<Timeout> owned = byOwner.remove(owner);
+        if (owned == null) {
+            return;
+        }
+        for (Timeout timeout : owned) {
+            timeout.cancelled = true;
+            unlink(timeout);
+        }
+    }
+
+    private void insert(Timeout timeout, long delayTicks) {
+        long target = tick + delayTicks;
+        int index = (int) (target & mask);
+        timeout.rounds = (delayTicks - 1) / slots.length;
+        timeout.slot = index;
+        timeout.prev = null;
+        timeout.next = slots[index];
+        if (slots[index] != null) {
+            slots[index].prev = timeout;
+        }
+        slots[index] = timeout;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.slot < 0) {
+            return;
+        }
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            slots[timeout.slot] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.slot = -1;
+    }
+
+    private void tick() {
+        TickProfiler profiler = plugin.getTickProfiler();
+        profiler.enter();
+        try {
+            advance();
+        } finally {
+            profiler.exit(TickProfiler.Section.TIMING_WHEEL);
+        }
+    }
+
+    private void advance() {
+        tick++;
+        int index = (int) (tick & mask);
+
+        // Collect entries whose round has come up, the rest wait for another lap
+        Timeout current = slots[index];
+        while (current != null) {
+            Timeout next = current.next;
+            if (current.rounds <= 0) {
+                unlink(current);
+                due.add(current);
+            } else {
+                current.rounds--;
+            }
+            current = next;
+        }
+
+        long budget = plugin.getConfig().getLong("settings.scheduler.tick_budget_micros", 500L) * 1000L;
+        long start = System.nanoTime();
+        Timeout timeout;
+        while ((timeout = due.poll()) != null) {
+            if (!timeout.cancelled) {
+                run(timeout);
+            }
+            if (System.nanoTime() - start > budget) {
+                break;
+            }
+        }
+    }
+
+    private void run(Timeout timeout) {
+        try {
+            timeout.action.run();
+        } catch (Exception e) {
+            plugin.getLogger().severe("Error in scheduled task: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        if (timeout.cancelled) {
+            return;
+        }
+        if (timeout.period > 0) {
+            insert(timeout, timeout.period);
+        } else if (timeout.owner != null) {
+            Set<Timeout> owned = byOwner.get(timeout.owner);
+            if (owned != null) {
+                owned.remove(timeout);
+                if (owned.isEmpty()) {
+                    byOwner.remove(timeout.owner);
+                }
+            }
+        }
+    }
+
+    /**
+     * Handle for a scheduled task. Cancelling is O(1).
+     */
+    public final class Timeout {
+        private final UUID owner;
+        private final long period;
+        private final Runnable action;
+        private long rounds;
+        private int slot = -1;
+        private Timeout prev;
+        private Timeout next;
+        private boolean cancelled;
+
+        private Timeout(UUID owner, long period, Runnable action) {
+            this.owner = owner;
+            this.period = period;
+            this.action = action;
+        }
+
+        public void cancel() {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            unlink(this);
+            if (owner != null) {
+                Set<Timeout> owned = byOwner.get(owner);
+                if (owned != null) {
+                    owned.remove(this);
+                    if (owned.isEmpty()) {
+                        byOwner.remove(owner);
+                    }
+                }
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package dev.guk.discordlink.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Preallocated multi-producer, single-consumer ring buffer of fixed-size
+ * audit records. Producers claim a slot with a CAS on the claim sequence and
+ * never block; when the consumer falls a full lap behind, new records are
+ * dropped and counted instead of waiting.
+ *
+ * Records are stored column-wise in primitive arrays so publishing never allocates.
+ */
+public class AuditRingBuffer {
+    private final int capacity;
+    private final int mask;
+    private final int[] actions;
+    private final long[] timestamps;
+    private final long[] uuidMost;
+    private final long[] uuidLeast;
+    private final long[] discordIds;
+    // Sequence number last published into each slot, -1 while empty
+    private final AtomicLongArray published;
+    private final AtomicLong claimed;
+    private final AtomicLong consumed;
+    private final AtomicLong dropped;
+
+    public AuditRingBuffer(int requestedCapacity) {
+        this.capacity = Integer.highestOneBit(Math.max(2, requestedCapacity) - 1) << 1;
+        this.mask = capacity - 1;
+        this.actions = new int[capacity];
+        this.timestamps = new long[capacity];
+        this.uuidMost = new long[capacity];
+        this.uuidLeast = new long[capacity];
+        this.discordIds = new long[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1L);
+        }
+        this.claimed = new AtomicLong();
+        this.consumed = new AtomicLong();
+        this.dropped = new AtomicLong();
+    }
+
+    /**
+     * Publishes a record. Safe to call from any thread.
+     *
+     * @return false if the buffer was full and the record was dropped
+     */
+    public boolean publish(int action, long timestamp, long mostSigBits, long leastSigBits, long discordId) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed.get() >= capacity) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        int index = (int) (sequence & mask);
+        actions[index] = action;
+        timestamps[index] = timestamp;
+        uuidMost[index] = mostSigBits;
+        uuidLeast[index] = leastSigBits;
+        discordIds[index] = discordId;
+        // Volatile write makes the fields above visible to the consumer
+        published.set(index, sequence);
+        return true;
+    }
+
+    /**
+     * Hands up to max published records to the handler in order. Must only be
+     * called from the single consumer thread.
+     *
+     * @return the number of records handled
+     */
+    public int drain(Handler handler, int max) {
+        long next = consumed.get();
+        int count = 0;
+        while (count < max) {
+            int index = (int) (next & mask);
+            if (published.get(index) != next) {
+                break;
+            }
+            handler.onRecord(actions[index], timestamps[index], uuidMost[index], uuidLeast[index], discordIds[index]);
+            next++;
+            count++;
+            // Free the slot for producers as soon as it has been read
+            consumed.lazySet(next);
+        }
+        return count;
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public interface Handler {
+        void onRecord(int action, long timestamp, long mostSigBits, long leastSigBits, long discordId);
+    }
+}
@@ -0,0 +1,139 @@
+package dev.guk.discordlink.discord;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class GatewayProtocolTest {
+
+    @Test
+    void batchSurvivesRoundTrip() throws Exception {
+        List<GatewayProtocol.Message> batch = List.of(
+                GatewayProtocol.Message.of(GatewayProtocol.Type.HELLO, "lobby-1", "secret"),
+                new GatewayProtocol.Message(GatewayProtocol.Type.REGISTER_CODE, "0b7a3c1e-5f0d-4a8e-9c2b-1d3e5f7a9b0c", "AB12CD", 1_700_000_000_000L),
+                GatewayProtocol.Message.of(GatewayProtocol.Type.DIRECT_MESSAGE, "123456789012345678", "🔐 Your 2FA code: **482913**"),
+                new GatewayProtocol.Message(GatewayProtocol.Type.ROLES, "123456789012345678", "1,2,3", 1L),
+                new GatewayProtocol.Message(GatewayProtocol.Type.LINKED_IDS, "1,2", null, -1L));
+
+        assertEquals(batch, read(write(batch)));
+    }
+
+    @Test
+    void emptyStringsComeBackAsNull() throws Exception {
+        List<GatewayProtocol.Message> batch = List.of(
+                GatewayProtocol.Message.of(GatewayProtocol.Type.MEMBER_LEFT, "123456789012345678", null),
+                GatewayProtocol.Message.of(GatewayProtocol.Type.NICKNAME, "", ""));
+
+        List<GatewayProtocol.Message> decoded = read(write(batch));
+        assertEquals(batch.get(0), decoded.get(0));
+        assertEquals(GatewayProtocol.Message.of(GatewayProtocol.Type.NICKNAME, null, null), decoded.get(1));
+    }
+
+    @Test
+    void consecutiveFramesAreReadOneAtATime() throws Exception {
+        List<GatewayProtocol.Message> first = List.of(GatewayProtocol.Message.of(GatewayProtocol.Type.REMOVE_ROLES, "1", null));
+        List<GatewayProtocol.Message> second = List.of();
+        List<GatewayProtocol.Message> third = List.of(GatewayProtocol.Message.of(GatewayProtocol.Type.REDEEMED, "2", "3"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        GatewayProtocol.writeBatch(out, first);
+        GatewayProtocol.writeBatch(out, second);
+        GatewayProtocol.writeBatch(out, third);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(first, GatewayProtocol.readBatch(in));
+        assertEquals(second, GatewayProtocol.readBatch(in));
+        assertEquals(third, GatewayProtocol.readBatch(in));
+        assertThrows(EOFException.class, () -> GatewayProtocol.readBatch(in));
+    }
+
+    @Test
+    void rejectsFrameLengthOutOfRange() {
+        assertThrows(IOException.class, () -> read(frame(3, 0)));
+        assertThrows(IOException.class, () -> read(frame(-1, 0)));
+        assertThrows(IOException.class, () -> read(frame(4 * 1024 * 1024 + 1, 0)));
+    }
+
+    @Test
+    void rejectsMessageCountOutOfRange() {
+        assertThrows(IOException.class, () -> read(frame(8, -1, 0)));
+        assertThrows(IOException.class, () -> read(frame(8, 9, 0)));
+    }
+
+    @Test
+    void rejectsUnknownType() throws Exception {
+        byte[] valid = write(List.of(GatewayProtocol.Message.of(GatewayProtocol.Type.HELLO, "a", "b")));
+        // Frame length, message count, then the type byte
+        valid[8] = (byte) GatewayProtocol.Type.values().length;
+        IOException error = assertThrows(IOException.class, () -> read(valid));
+        assertTrue(error.getMessage().contains("type"));
+
+        valid[8] = (byte) 0xFF;
+        assertThrows(IOException.class, () -> read(valid));
+    }
+
+    @Test
+    void rejectsTruncatedFrame() throws Exception {
+        byte[] valid = write(List.of(GatewayProtocol.Message.of(GatewayProtocol.Type.HELLO, "lobby", "secret")));
+        byte[] truncated = new byte[valid.length - 3];
+        System.arraycopy(valid, 0, truncated, 0, truncated.length);
+        assertThrows(EOFException.class, () -> read(truncated));
+    }
+
+    @Test
+    void helloSecretMustMatchExactly() {
+        assertTrue(SharedGateway.isSecret("s3cret", "s3cret"));
+        assertFalse(SharedGateway.isSecret("s3cret", "s3creT"));
+        assertFalse(SharedGateway.isSecret("s3cret", "s3cret "));
+        assertFalse(SharedGateway.isSecret("s3cret", "s3"));
+        assertFalse(SharedGateway.isSecret("s3cret", ""));
+        assertFalse(SharedGateway.isSecret("s3cret", null));
+        // An unset secret must never authenticate, not even an empty HELLO
+        assertFalse(SharedGateway.isSecret("", ""));
+        assertFalse(SharedGateway.isSecret(null, null));
+    }
+
+    @Test
+    void helloSecretSurvivesTheWire() throws Exception {
+        GatewayProtocol.Message hello = read(write(List.of(
+                GatewayProtocol.Message.of(GatewayProtocol.Type.HELLO, "lobby-1", "pässwörd-✓")))).get(0);
+        assertEquals(GatewayProtocol.Type.HELLO, hello.type());
+        assertTrue(SharedGateway.isSecret("pässwörd-✓", hello.second()));
+    }
+
+    private static byte[] write(List<GatewayProtocol.Message> batch) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GatewayProtocol.writeBatch(new DataOutputStream(bytes), batch);
+        return bytes.toByteArray();
+    }
+
+    private static List<GatewayProtocol.Message> read(byte[] bytes) throws IOException {
+        return new ArrayList<>(GatewayProtocol.readBatch(new DataInputStream(new ByteArrayInputStream(bytes))));
+    }
+
+    /**
+     * A raw frame: the given length header followed by the given ints as payload.
+     */
+    private static byte[] frame(int length, int... payload) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(length);
+        for (int value : payload) {
+            out.writeInt(value);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,172 @@
+package dev.guk.discordlink.discord;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import net.dv8tion.jda.api.exceptions.RateLimitedException;
+
+class RestSchedulerTest {
+    private ScheduledExecutorService timer;
+    private FakeRest rest;
+
+    @BeforeEach
+    void setUp() {
+        timer = Executors.newSingleThreadScheduledExecutor();
+        rest = new FakeRest();
+    }
+
+    @AfterEach
+    void tearDown() {
+        timer.shutdownNow();
+    }
+
+    @Test
+    void rateLimitedRequestIsRetriedAfterBackoff() throws Exception {
+        RestScheduler scheduler = new RestScheduler(null, timer);
+        rest.rateLimitNext(2, 50);
+
+        CompletableFuture<String> result = scheduler.submit(RestScheduler.Priority.ROLE, () -> rest.call("role"));
+
+        assertEquals("role", result.get(2, TimeUnit.SECONDS));
+        assertEquals(List.of("role", "role", "role"), rest.calls());
+        RestScheduler.Stats stats = scheduler.getStats(RestScheduler.Priority.ROLE);
+        assertEquals(2, stats.rateLimited());
+        assertEquals(3, stats.started());
+        assertEquals(0, stats.dropped());
+    }
+
+    @Test
+    void backoffOnlyHoldsTheRateLimitedClass() throws Exception {
+        RestScheduler scheduler = new RestScheduler(null, timer);
+        rest.rateLimitNext(1, 300);
+
+        CompletableFuture<String> role = scheduler.submit(RestScheduler.Priority.ROLE, () -> rest.call("role-1"));
+        CompletableFuture<String> queuedRole = scheduler.submit(RestScheduler.Priority.ROLE, () -> rest.call("role-2"));
+        CompletableFuture<String> cosmetic = scheduler.submit(RestScheduler.Priority.COSMETIC, () -> rest.call("cosmetic"));
+        CompletableFuture<String> interaction = scheduler.submit(RestScheduler.Priority.INTERACTION, () -> rest.call("interaction"));
+
+        assertEquals("cosmetic", cosmetic.get(100, TimeUnit.MILLISECONDS));
+        assertEquals("interaction", interaction.get(100, TimeUnit.MILLISECONDS));
+        assertFalse(role.isDone());
+        assertFalse(queuedRole.isDone());
+
+        assertEquals("role-2", queuedRole.get(2, TimeUnit.SECONDS));
+        assertTrue(role.isDone());
+        // The rate limited request goes back to the front, ahead of anything queued behind it
+        assertEquals(List.of("role-1", "cosmetic", "interaction", "role-1", "role-2"), rest.calls());
+    }
+
+    @Test
+    void lowerClassWaitsWhileHigherClassIsQueued() throws Exception {
+        YamlConfiguration settings = new YamlConfiguration();
+        settings.set("role.concurrency", 1);
+        RestScheduler scheduler = new RestScheduler(settings, timer);
+
+        CompletableFuture<String> first = scheduler.submit(RestScheduler.Priority.ROLE, () -> rest.hold("role-1"));
+        CompletableFuture<String> second = scheduler.submit(RestScheduler.Priority.ROLE, () -> rest.hold("role-2"));
+        CompletableFuture<String> cosmetic = scheduler.submit(RestScheduler.Priority.COSMETIC, () -> rest.call("cosmetic"));
+        assertEquals(List.of("role-1"), rest.calls());
+
+        rest.release("role-1");
+        assertEquals("role-1", first.get(1, TimeUnit.SECONDS));
+        // Once nothing higher is waiting the cosmetic request may run next to the in-flight role update
+        assertEquals("cosmetic", cosmetic.get(1, TimeUnit.SECONDS));
+        assertEquals(List.of("role-1", "role-2", "cosmetic"), rest.calls());
+
+        rest.release("role-2");
+        assertEquals("role-2", second.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void fullQueueRejectsRequests() {
+        YamlConfiguration settings = new YamlConfiguration();
+        settings.set("cosmetic.concurrency", 1);
+        settings.set("cosmetic.queue_size", 1);
+        RestScheduler scheduler = new RestScheduler(settings, timer);
+
+        scheduler.submit(RestScheduler.Priority.COSMETIC, () -> rest.hold("in-flight"));
+        CompletableFuture<String> queued = scheduler.submit(RestScheduler.Priority.COSMETIC, () -> rest.call("queued"));
+        CompletableFuture<String> rejected = scheduler.submit(RestScheduler.Priority.COSMETIC, () -> rest.call("rejected"));
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> rejected.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, error.getCause());
+        assertFalse(queued.isDone());
+        assertEquals(1, scheduler.getStats(RestScheduler.Priority.COSMETIC).dropped());
+    }
+
+    @Test
+    void staleRequestsAreDroppedDuringBackoff() throws Exception {
+        YamlConfiguration settings = new YamlConfiguration();
+        settings.set("cosmetic.max_wait_ms", 50);
+        RestScheduler scheduler = new RestScheduler(settings, timer);
+        rest.rateLimitNext(1, 200);
+
+        CompletableFuture<String> cosmetic = scheduler.submit(RestScheduler.Priority.COSMETIC, () -> rest.call("cosmetic"));
+        CompletableFuture<String> role = scheduler.submit(RestScheduler.Priority.ROLE, () -> rest.call("role"));
+
+        assertEquals("role", role.get(100, TimeUnit.MILLISECONDS));
+        ExecutionException error = assertThrows(ExecutionException.class, () -> cosmetic.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, error.getCause());
+        // Dropped when the backoff ended instead of being retried
+        assertEquals(List.of("cosmetic", "role"), rest.calls());
+    }
+
+    /**
+     * Stands in for Discord: answers immediately, answers when released, or
+     * fails the next calls with a 429 the way JDA's submit(false) does.
+     */
+    private static class FakeRest {
+        private final List<String> calls = new ArrayList<>();
+        private final Map<String, CompletableFuture<String>> held = new ConcurrentHashMap<>();
+        private int rateLimitedCalls;
+        private long retryAfter;
+
+        synchronized void rateLimitNext(int count, long retryAfterMillis) {
+            this.rateLimitedCalls = count;
+            this.retryAfter = retryAfterMillis;
+        }
+
+        synchronized CompletableFuture<String> call(String name) {
+            calls.add(name);
+            if (rateLimitedCalls > 0) {
+                rateLimitedCalls--;
+                return CompletableFuture.failedFuture(new RateLimitedException("fake/" + name, retryAfter));
+            }
+            return CompletableFuture.completedFuture(name);
+        }
+
+        synchronized CompletableFuture<String> hold(String name) {
+            calls.add(name);
+            CompletableFuture<String> response = new CompletableFuture<>();
+            held.put(name, response);
+            return response;
+        }
+
+        void release(String name) {
+            held.remove(name).complete(name);
+        }
+
+        synchronized List<String> calls() {
+            return new ArrayList<>(calls);
+        }
+    }
+}
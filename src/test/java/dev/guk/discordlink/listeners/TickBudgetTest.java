@@ -0,0 +1,223 @@
+package dev.guk.discordlink.listeners;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.block.BlockFace;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.event.block.Action;
+import org.bukkit.event.player.PlayerCommandPreprocessEvent;
+import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.inventory.ItemStack;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import be.seeseemelk.mockbukkit.ServerMock;
+import be.seeseemelk.mockbukkit.entity.PlayerMock;
+import dev.guk.discordlink.DiscordLink;
+import dev.guk.discordlink.tasks.BroadcastTask;
+import dev.guk.discordlink.tasks.TickProfiler;
+
+/**
+ * Drives PlayerListener and BroadcastTask on a mock server with a mix of
+ * verified, unverified, frozen and awaiting-2FA players, and fails when the
+ * plugin's own per-tick cost, as measured by TickProfiler, goes over budget.
+ *
+ * Budgets come from the tickbudget.micros and tickbudget.allocation.kb
+ * properties in pom.xml.
+ */
+class TickBudgetTest {
+    private static final long BUDGET_MICROS = Long.getLong("tickbudget.micros", 2000L);
+    private static final long ALLOCATION_BUDGET_KB = Long.getLong("tickbudget.allocation.kb", 512L);
+
+    // Events per tick per 10,000 online players
+    private static final int MOVES = 2500;
+    private static final int INTERACTS = 100;
+    private static final int COMMANDS = 20;
+    private static final int RECONNECTS = 5;
+
+    private static final int WARMUP_TICKS = 200;
+    private static final int MEASURED_TICKS = 600;
+    // GC pauses and the odd slow tick are tolerated, a regression shows up as many
+    private static final int MAX_TICKS_OVER_BUDGET = MEASURED_TICKS / 100;
+
+    private static final String[] COMMAND_LINES = {"/spawn", "/verify", "/server lobby", "/msg friend hi", "/2fa 123456"};
+
+    private enum State {
+        VERIFIED,
+        UNVERIFIED,
+        FROZEN,
+        AWAITING_TWO_FACTOR
+    }
+
+    private ServerMock server;
+    private TestPlugin plugin;
+    private Random random;
+    private ItemStack compass;
+
+    @BeforeEach
+    void setUp() {
+        server = MockBukkit.mock();
+        server.addSimpleWorld("world");
+        plugin = MockBukkit.load(TestPlugin.class);
+        random = new Random(42L);
+        compass = new ItemStack(Material.COMPASS);
+
+        FileConfiguration config = plugin.getConfig();
+        config.set("two_factor_auth.enabled", true);
+        config.set("two_factor_auth.freeze_until_verified", true);
+        config.set("verification.freeze.enabled", true);
+        config.set("verification.freeze.reminder_interval", 5);
+        config.set("server_selector.block_unverified", true);
+        config.set("broadcast.interval", 5);
+        config.set("broadcast.messages", List.of("&7Link your Discord account with &f/verify"));
+        config.set("settings.timings.enabled", true);
+        config.set("settings.timings.tick_budget_micros", BUDGET_MICROS);
+        config.set("settings.timings.allocation_budget_kb", ALLOCATION_BUDGET_KB);
+        // The profiler reads its budgets when it starts
+        plugin.getTickProfiler().stop();
+        plugin.getTickProfiler().start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        MockBukkit.unmock();
+    }
+
+    @ParameterizedTest(name = "{0} players")
+    @ValueSource(ints = {100, 500, 2000})
+    void staysWithinTickBudget(int playerCount) {
+        List<PlayerMock> players = spawn(playerCount);
+        BroadcastTask broadcast = new BroadcastTask(plugin);
+        broadcast.start();
+
+        // Let the JIT settle before measuring
+        simulate(players, WARMUP_TICKS);
+        TickProfiler profiler = plugin.getTickProfiler();
+        profiler.reset();
+        simulate(players, MEASURED_TICKS);
+        broadcast.stop();
+
+        TickProfiler.TickSnapshot ticks = profiler.getTicks();
+        String summary = playerCount + " players: avg " + ticks.averageNanos() / 1000L + "µs, worst "
+                + ticks.worstNanos() / 1000L + "µs / " + ticks.worstBytes() / 1024L + "KB, "
+                + ticks.overBudget() + " tick(s) over budget";
+        plugin.getLogger().info(summary);
+
+        assertTrue(ticks.averageNanos() <= BUDGET_MICROS * 1000L,
+                "Average tick cost over " + BUDGET_MICROS + "µs budget, " + summary);
+        assertTrue(ticks.overBudget() <= MAX_TICKS_OVER_BUDGET,
+                "More than " + MAX_TICKS_OVER_BUDGET + " ticks over budget, " + summary);
+        if (profiler.isMeasuringAllocations()) {
+            assertTrue(ticks.worstBytes() <= ALLOCATION_BUDGET_KB * 1024L,
+                    "A tick allocated more than " + ALLOCATION_BUDGET_KB + "KB, " + summary);
+        }
+    }
+
+    /**
+     * Joins players in equal shares of each state and checks they ended up in it.
+     */
+    private List<PlayerMock> spawn(int count) {
+        List<PlayerMock> players = new ArrayList<>(count);
+        Map<State, Integer> expected = new EnumMap<>(State.class);
+        for (int i = 0; i < count; i++) {
+            State state = State.values()[i % State.values().length];
+            expected.merge(state, 1, Integer::sum);
+            PlayerMock player = new PlayerMock(server, "player" + i, UUID.randomUUID());
+            if (state == State.VERIFIED || state == State.AWAITING_TWO_FACTOR) {
+                plugin.getStorageManager().storeVerification(player.getUniqueId(), Long.toString(100_000_000_000_000_000L + i));
+            }
+            if (state == State.UNVERIFIED) {
+                player.addAttachment(plugin, plugin.getConfig().getString("verification.freeze.bypass_permission"), true);
+            }
+            server.addPlayer(player);
+
+            if (state == State.VERIFIED) {
+                // Complete 2FA once, then come back from the same address on a trusted session
+                plugin.getTwoFactorSessionManager().handleQuit(player.getUniqueId(), true);
+                player.disconnect();
+                player.reconnect();
+            }
+            players.add(player);
+        }
+
+        Map<State, Integer> actual = new EnumMap<>(State.class);
+        for (PlayerMock player : players) {
+            actual.merge(stateOf(player.getUniqueId()), 1, Integer::sum);
+        }
+        assertEquals(expected, actual, "Players did not end up in the intended states");
+        return players;
+    }
+
+    private State stateOf(UUID playerId) {
+        if (plugin.getVerificationFreezeManager().isFrozen(playerId)) {
+            return State.FROZEN;
+        }
+        if (!plugin.getVerificationManager().isVerified(playerId)) {
+            return State.UNVERIFIED;
+        }
+        return plugin.getTwoFactorSessionManager().hasTrustedSession(playerId) ? State.VERIFIED : State.AWAITING_TWO_FACTOR;
+    }
+
+    private void simulate(List<PlayerMock> players, int ticks) {
+        int count = players.size();
+        for (int tick = 0; tick < ticks; tick++) {
+            for (int i = 0; i < events(count, MOVES); i++) {
+                PlayerMock player = pick(players);
+                Location from = player.getLocation();
+                Location to = from.clone().add(random.nextBoolean() ? 0.3 : -0.3, 0, 0);
+                server.getPluginManager().callEvent(new PlayerMoveEvent(player, from, to));
+            }
+            for (int i = 0; i < events(count, INTERACTS); i++) {
+                server.getPluginManager().callEvent(new PlayerInteractEvent(pick(players), Action.RIGHT_CLICK_AIR,
+                        compass, null, BlockFace.SELF));
+            }
+            for (int i = 0; i < events(count, COMMANDS); i++) {
+                server.getPluginManager().callEvent(new PlayerCommandPreprocessEvent(pick(players),
+                        COMMAND_LINES[random.nextInt(COMMAND_LINES.length)]));
+            }
+            for (int i = 0; i < events(count, RECONNECTS); i++) {
+                PlayerMock player = pick(players);
+                player.disconnect();
+                player.reconnect();
+            }
+            // Runs the profiler's end of tick along with the plugin's own tasks
+            server.getScheduler().performOneTick();
+        }
+    }
+
+    /**
+     * Scales a per-10,000 rate to the player count, carrying the remainder as a chance.
+     */
+    private int events(int players, int per10k) {
+        int scaled = players * per10k;
+        return scaled / 10_000 + (random.nextInt(10_000) < scaled % 10_000 ? 1 : 0);
+    }
+
+    private PlayerMock pick(List<PlayerMock> players) {
+        return players.get(random.nextInt(players.size()));
+    }
+
+    /**
+     * The real plugin without a Discord connection.
+     */
+    public static class TestPlugin extends DiscordLink {
+        @Override
+        protected boolean connectDiscord() {
+            return true;
+        }
+    }
+}